@@ -0,0 +1,103 @@
+package com.expensetracker.benchmarks;
+
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+import com.expensetracker.repository.ExpenseDocuments;
+import com.google.cloud.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per document of converting between Firestore fields and {@link Expense}.
+ * The amount and date benchmarks isolate the two conversions done for every row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpenseConversionBenchmark {
+
+    private static final int DOCUMENTS = 1024;
+
+    private List<Expense> expenses;
+    private List<Map<String, Object>> documents;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        expenses = ExpenseFixtures.expenses(DOCUMENTS);
+        documents = ExpenseFixtures.documents(expenses);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (DOCUMENTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Expense documentToExpense() {
+        int index = nextIndex();
+        return ExpenseDocuments.fromMap(expenses.get(index).getId(), documents.get(index));
+    }
+
+    @Benchmark
+    public Map<String, Object> expenseToMap() {
+        return ExpenseDocuments.toMap(expenses.get(nextIndex()));
+    }
+
+    /**
+     * The Double to String to BigDecimal round trip documentToExpense used before minor units,
+     * and still uses for documents without them.
+     */
+    @Benchmark
+    public BigDecimal amountViaString() {
+        double amount = (Double) documents.get(nextIndex()).get("amount");
+        return new BigDecimal(Double.toString(amount));
+    }
+
+    /**
+     * Reading the amount from minor units, as documentToExpense does for documents that have them.
+     */
+    @Benchmark
+    public BigDecimal amountFromMinorUnits() {
+        return Amounts.fromMinor(((Number) documents.get(nextIndex()).get("amountMinor")).longValue());
+    }
+
+    /**
+     * The Timestamp to Date to LocalDate conversion done by documentToExpense.
+     */
+    @Benchmark
+    public LocalDate timestampToLocalDate() {
+        Timestamp timestamp = (Timestamp) documents.get(nextIndex()).get("date");
+        return timestamp.toDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * A whole query result's worth of conversions, for comparison with the per-row numbers.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void documentsToExpenses(Blackhole blackhole) {
+        for (int i = 0; i < DOCUMENTS; i++) {
+            blackhole.consume(ExpenseDocuments.fromMap(expenses.get(i).getId(), documents.get(i)));
+        }
+    }
+}
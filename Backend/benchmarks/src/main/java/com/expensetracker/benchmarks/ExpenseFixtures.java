@@ -0,0 +1,59 @@
+package com.expensetracker.benchmarks;
+
+import com.expensetracker.dto.ExpenseRequest;
+import com.expensetracker.model.Expense;
+import com.expensetracker.repository.ExpenseDocuments;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic sample data shaped like real expenses.
+ */
+final class ExpenseFixtures {
+
+    static final String[] CATEGORIES = {"Food", "Transport", "Shopping", "Bills", "Entertainment", "Health", "Other"};
+
+    private ExpenseFixtures() {
+    }
+
+    static List<Expense> expenses(int count) {
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Expense expense = new Expense(
+                    String.format("expense%015d", i),
+                    "Expense number " + i,
+                    BigDecimal.valueOf(1 + random.nextInt(500_000), 2),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    start.plusDays(random.nextInt(730)));
+            expense.setUserId("user-" + random.nextInt(10));
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+
+    /**
+     * Firestore field maps as the repository writes them, keyed by position in {@link #expenses(int)}.
+     */
+    static List<Map<String, Object>> documents(List<Expense> expenses) {
+        List<Map<String, Object>> documents = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            documents.add(ExpenseDocuments.toMap(expense));
+        }
+        return documents;
+    }
+
+    static ExpenseRequest validRequest() {
+        return new ExpenseRequest("Groceries", new BigDecimal("42.50"), "Food", LocalDate.of(2024, 3, 1));
+    }
+
+    static ExpenseRequest invalidRequest() {
+        return new ExpenseRequest(" ", new BigDecimal("0"), "Food; DROP", LocalDate.now().plusDays(1));
+    }
+}
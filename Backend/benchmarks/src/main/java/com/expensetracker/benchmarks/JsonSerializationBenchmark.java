@@ -0,0 +1,106 @@
+package com.expensetracker.benchmarks;
+
+import com.expensetracker.controller.ExpenseListWriter;
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.dto.ExpenseResponse;
+import com.expensetracker.model.Expense;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the API responses, with an ObjectMapper configured like Spring Boot's.
+ * The list response is also written to a stream, once through the ObjectMapper as Spring MVC writes a
+ * response body and once by {@link ExpenseListWriter} as the list endpoint does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private Expense expense;
+    private List<Expense> expenses;
+    private ExpenseResponse response;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        expenses = ExpenseFixtures.expenses(size);
+        BigDecimal total = expenses.stream().map(Expense::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        expense = expenses.get(0);
+        response = new ExpenseResponse(expenses, total, expenses.size());
+    }
+
+    @Benchmark
+    public byte[] expense() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(expense);
+    }
+
+    @Benchmark
+    public byte[] expenseResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public long expenseResponseToStream() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        objectMapper.writeValue(out, response);
+        return out.count;
+    }
+
+    @Benchmark
+    public long expenseListWriter() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        ExpenseListWriter listWriter = new ExpenseListWriter(objectMapper.getFactory().createGenerator(out),
+                ExpenseFields.ALL);
+        listWriter.writeStart();
+        listWriter.writePage(expenses);
+        listWriter.writeEnd();
+        return out.count;
+    }
+
+    /**
+     * Stands in for the response stream: counts the bytes so the writes cannot be optimized away.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
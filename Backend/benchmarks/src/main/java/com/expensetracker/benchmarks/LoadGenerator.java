@@ -0,0 +1,299 @@
+package com.expensetracker.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load against a running backend, for capacity planning.
+ * <p>
+ * Requests are started on a fixed schedule at the target rate whether or not earlier ones have
+ * finished, and each latency is measured from the moment the request was due. A server that falls
+ * behind therefore shows up as growing latency instead of a silently lower request rate.
+ * <pre>
+ * cd Backend &amp;&amp; mvn spring-boot:run -Dspring-boot.run.profiles=loadtest
+ * java -cp benchmarks/target/benchmarks.jar com.expensetracker.benchmarks.LoadGenerator \
+ *     --rps=200 --duration=60 --mix=list:50,get:20,create:20,summary:10
+ * </pre>
+ * Options (defaults): {@code --url=http://localhost:8080}, {@code --rps=100}, {@code --duration=30}
+ * and {@code --warmup=10} seconds, {@code --users=50}, {@code --seed=20} expenses per user created
+ * before the run, {@code --max-in-flight=2000}, {@code --mix} weights of list, get, create and
+ * summary requests. Requests are sent with {@code X-User-Id}, so the backend must not require ID
+ * tokens (the {@code embedded} and {@code loadtest} profiles do not).
+ */
+public final class LoadGenerator {
+
+    private static final String[] CATEGORIES =
+            {"Food", "Transport", "Entertainment", "Utilities", "Healthcare", "Shopping", "Education", "Other"};
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final Map<String, List<String>> idsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private LoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl + "/api/expenses";
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        LoadGenerator generator = new LoadGenerator(options.getOrDefault("url", "http://localhost:8080"));
+        int users = Integer.parseInt(options.getOrDefault("users", "50"));
+        int seed = Integer.parseInt(options.getOrDefault("seed", "20"));
+        double rps = Double.parseDouble(options.getOrDefault("rps", "100"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "2000"));
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", "list:50,get:20,create:20,summary:10"));
+
+        System.out.printf("Seeding %d users with %d expenses each...%n", users, seed);
+        generator.seed(users, seed);
+        System.out.printf("Warming up for %d s, then measuring %d s at %.0f requests/s%n",
+                warmupSeconds, durationSeconds, rps);
+        generator.run(users, mix, rps, warmupSeconds, false, maxInFlight);
+        generator.run(users, mix, rps, durationSeconds, true, maxInFlight);
+        generator.report(durationSeconds, rps);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            String operation = parts[0].trim();
+            if (!List.of("list", "get", "create", "summary").contains(operation)) {
+                throw new IllegalArgumentException("Unknown operation in --mix: " + operation);
+            }
+            weights.put(operation, Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    private void seed(int users, int perUser) {
+        List<CompletableFuture<?>> creates = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            String userId = user(u);
+            idsByUser.put(userId, new CopyOnWriteArrayList<>());
+            for (int i = 0; i < perUser; i++) {
+                creates.add(send(create(userId)).thenAccept(response -> remember(userId, response)));
+            }
+        }
+        CompletableFuture.allOf(creates.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Start requests every {@code 1 / rps} seconds for {@code seconds}, then wait for them to finish.
+     */
+    private void run(int users, Map<String, Integer> mix, double rps, int seconds, boolean record,
+                     int maxInFlight) {
+        Random random = new Random(7);
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rps);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+
+        for (long due = start; due < end; due += intervalNanos) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String operation = pick(mix, totalWeight, random);
+            String userId = user(random.nextInt(users));
+            Recorder recorder = record ? recorder(operation) : null;
+
+            if (!inFlight.tryAcquire()) {
+                // The client itself is saturated; count it rather than queueing without bound
+                if (recorder != null) {
+                    recorder.dropped.incrementAndGet();
+                }
+                continue;
+            }
+            long dueAt = due;
+            pending.add(send(request(operation, userId, random)).whenComplete((response, error) -> {
+                inFlight.release();
+                if (recorder != null) {
+                    recorder.record(System.nanoTime() - dueAt, error == null ? response.statusCode() : -1);
+                }
+                if (error == null && operation.equals("create")) {
+                    remember(userId, response);
+                }
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                .exceptionally(error -> null)
+                .join();
+    }
+
+    private static String pick(Map<String, Integer> mix, int totalWeight, Random random) {
+        int roll = random.nextInt(totalWeight);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+
+    private HttpRequest request(String operation, String userId, Random random) {
+        switch (operation) {
+            case "create":
+                return create(userId);
+            case "get":
+                List<String> ids = idsByUser.get(userId);
+                if (ids != null && !ids.isEmpty()) {
+                    return get(userId, "/" + ids.get(random.nextInt(ids.size())));
+                }
+                return get(userId, "");
+            case "summary":
+                return get(userId, "/summary");
+            default:
+                return get(userId, "");
+        }
+    }
+
+    private HttpRequest get(String userId, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("X-User-Id", userId)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest create(String userId) {
+        long n = sequence.incrementAndGet();
+        String body = String.format(Locale.ROOT,
+                "{\"title\":\"Load test %d\",\"amount\":%d.%02d,\"category\":\"%s\",\"date\":\"%s\"}",
+                n, 1 + n % 5000, n % 100, CATEGORIES[(int) (n % CATEGORIES.length)],
+                LocalDate.now().minusDays(n % 365));
+        return HttpRequest.newBuilder(URI.create(baseUrl))
+                .header("X-User-Id", userId)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void remember(String userId, HttpResponse<String> response) {
+        if (response.statusCode() != 201 && response.statusCode() != 200) {
+            return;
+        }
+        try {
+            JsonNode id = JSON.readTree(response.body()).get("id");
+            if (id != null) {
+                idsByUser.computeIfAbsent(userId, key -> new CopyOnWriteArrayList<>()).add(id.asText());
+            }
+        } catch (Exception e) {
+            // Not an expense body; nothing to remember
+        }
+    }
+
+    private static String user(int index) {
+        return "loadtest-user-" + index;
+    }
+
+    private synchronized Recorder recorder(String operation) {
+        return recorders.computeIfAbsent(operation, key -> new Recorder());
+    }
+
+    private void report(int seconds, double rps) {
+        System.out.printf("%nTarget %.0f requests/s for %d s%n", rps, seconds);
+        System.out.printf("%-8s %8s %9s %7s %7s %8s %8s %8s %8s %8s%n",
+                "op", "count", "req/s", "errors", "dropped", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Recorder all = new Recorder();
+        recorders.forEach((operation, recorder) -> {
+            print(operation, recorder, seconds);
+            all.merge(recorder);
+        });
+        print("all", all, seconds);
+    }
+
+    private static void print(String operation, Recorder recorder, int seconds) {
+        long[] sorted = recorder.sorted();
+        System.out.printf(Locale.ROOT, "%-8s %8d %9.1f %7d %7d %8.1f %8.1f %8.1f %8.1f %8.1f%n",
+                operation, sorted.length, (double) sorted.length / seconds, recorder.errors.get(),
+                recorder.dropped.get(), millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99),
+                millis(sorted, 0.999), millis(sorted, 1.0));
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /**
+     * Latencies in nanoseconds plus error and drop counts for one operation.
+     */
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+
+        synchronized void record(long nanos, int status) {
+            if (status < 200 || status >= 400) {
+                errors.incrementAndGet();
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        synchronized void merge(Recorder other) {
+            long[] theirs = other.sorted();
+            for (long nanos : theirs) {
+                record(nanos, 200);
+            }
+            errors.addAndGet(other.errors.get());
+            dropped.addAndGet(other.dropped.get());
+        }
+
+        synchronized long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
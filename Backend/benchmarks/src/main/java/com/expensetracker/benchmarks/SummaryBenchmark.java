@@ -0,0 +1,92 @@
+package com.expensetracker.benchmarks;
+
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summing a user's expenses: the BigDecimal stream the total used to be computed with,
+ * double accumulation as summaries were rebuilt before minor units, the long minor-unit
+ * accumulation used now, and the full per-category and per-month aggregation in both.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummaryBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private List<Expense> expenses;
+
+    @Setup
+    public void setUp() {
+        expenses = ExpenseFixtures.expenses(size);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalStream() {
+        return expenses.stream()
+                .map(Expense::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public double doubleLoop() {
+        double total = 0;
+        for (Expense expense : expenses) {
+            total += expense.getAmount().doubleValue();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long minorUnitLoop() {
+        long totalMinor = 0;
+        for (Expense expense : expenses) {
+            totalMinor += Amounts.toMinor(expense.getAmount());
+        }
+        return totalMinor;
+    }
+
+    @Benchmark
+    public Map<String, Long> categoryAndMonthMinorTotals() {
+        Map<String, Long> totals = new HashMap<>();
+        for (Expense expense : expenses) {
+            long amount = Amounts.toMinor(expense.getAmount());
+            totals.merge(expense.getCategory(), amount, Long::sum);
+            totals.merge(expense.getDate().toString().substring(0, 7), amount, Long::sum);
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public Map<String, Double> categoryAndMonthTotals() {
+        Map<String, Double> totals = new HashMap<>();
+        for (Expense expense : expenses) {
+            double amount = expense.getAmount().doubleValue();
+            totals.merge(expense.getCategory(), amount, Double::sum);
+            totals.merge(expense.getDate().toString().substring(0, 7), amount, Double::sum);
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,64 @@
+package com.expensetracker.benchmarks;
+
+import com.expensetracker.dto.ExpenseRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean Validation of one {@link ExpenseRequest}, as done for every create, update and imported row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private ExpenseRequest valid;
+    private ExpenseRequest invalid;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        valid = ExpenseFixtures.validRequest();
+        invalid = ExpenseFixtures.invalidRequest();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<ExpenseRequest>> validRequest() {
+        return validator.validate(valid);
+    }
+
+    /**
+     * Every field fails, so this includes building and interpolating each violation message.
+     */
+    @Benchmark
+    public Set<ConstraintViolation<ExpenseRequest>> invalidRequest() {
+        return validator.validate(invalid);
+    }
+}
@@ -0,0 +1,58 @@
+#!/bin/sh
+# Compares cold-start time of the packaged jar against the fast-start mode
+# (exploded classpath + CDS archive + lazy Firebase + Spring AOT).
+#
+#   cd Backend && benchmarks/startup.sh [runs]
+#
+# Every run starts the application with expense.startup.exit-on-ready=true and reports the
+# "process running for" time Spring Boot logs once the application is ready. The embedded profile is
+# used by default so no Firebase project is needed; set PROFILE= to measure the Firestore path
+# (which needs credentials for the non-lazy variant).
+set -e
+
+RUNS=${1:-5}
+PROFILE=${PROFILE-embedded}
+WORK=target/startup
+MAIN=com.expensetracker.ExpenseTrackerApplication
+
+rm -rf "$WORK" && mkdir -p "$WORK"
+
+echo "Building plain and AOT-processed jars..."
+mvn -B -q package -DskipTests
+cp target/expense-tracker-*-exec.jar "$WORK/plain.jar"
+mvn -B -q package -DskipTests -Paot -Daot.profiles="${PROFILE:-default}" > "$WORK/aot-build.log"
+cp target/expense-tracker-*-exec.jar "$WORK/aot.jar"
+
+explode() {
+    mkdir -p "$WORK/$1" && (cd "$WORK/$1" && jar xf "../$1.jar")
+    # CDS only accepts jars on the classpath, so the application classes are repacked
+    jar cf "$WORK/$1/application.jar" -C "$WORK/$1/BOOT-INF/classes" .
+    # Same order as the jar so the archive's classpath check passes
+    sed -n 's/^- "\(.*\)"$/\1/p' "$WORK/$1/BOOT-INF/classpath.idx" \
+        | sed "s|^|$WORK/$1/|" | tr '\n' ':' | sed "s|^|$WORK/$1/application.jar:|; s|:$||" > "$WORK/$1/classpath"
+}
+explode plain
+explode aot
+
+APP_ARGS="--server.port=0 --expense.startup.exit-on-ready=true --expense.embedded.data-dir=$WORK/data"
+[ -n "$PROFILE" ] && APP_ARGS="$APP_ARGS --spring.profiles.active=$PROFILE"
+
+# Record the CDS archives with one training run each
+java -XX:ArchiveClassesAtExit="$WORK/plain.jsa" -cp "$(cat $WORK/plain/classpath)" \
+    $MAIN $APP_ARGS --expense.firebase.lazy-init=true > /dev/null 2>&1
+java -XX:ArchiveClassesAtExit="$WORK/aot.jsa" -Dspring.aot.enabled=true -cp "$(cat $WORK/aot/classpath)" \
+    $MAIN $APP_ARGS --expense.firebase.lazy-init=true > /dev/null 2>&1
+
+measure() {
+    name=$1; shift
+    for i in $(seq "$RUNS"); do
+        "$@" $APP_ARGS 2>&1 | sed -n 's/.*process running for \([0-9.]*\)).*/\1/p'
+    done | awk -v name="$name" '{ sum += $1; n++ } END { printf "%-24s %6.2f s (mean of %d)\n", name, sum / n, n }'
+}
+
+measure "jar (current)"          java -jar "$WORK/plain.jar"
+measure "jar + lazy Firebase"    java -jar "$WORK/plain.jar" --expense.firebase.lazy-init=true
+measure "exploded + CDS"         java -XX:SharedArchiveFile="$WORK/plain.jsa" -cp "$(cat $WORK/plain/classpath)" \
+                                     $MAIN --expense.firebase.lazy-init=true
+measure "exploded + CDS + AOT"   java -XX:SharedArchiveFile="$WORK/aot.jsa" -Dspring.aot.enabled=true \
+                                     -cp "$(cat $WORK/aot/classpath)" $MAIN --expense.firebase.lazy-init=true
@@ -1,7 +1,10 @@
 package com.expensetracker;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 
 /**
  * Main entry point for the Expense Tracker application.
@@ -9,7 +12,21 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 @SpringBootApplication
 public class ExpenseTrackerApplication {
 
+    @Value("${expense.startup.exit-on-ready:false}")
+    private boolean exitOnReady;
+
     public static void main(String[] args) {
         SpringApplication.run(ExpenseTrackerApplication.class, args);
     }
+
+    /**
+     * With {@code expense.startup.exit-on-ready=true} the application stops as soon as it is ready.
+     * The Docker build uses this for the run that records the class data sharing archive.
+     */
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        if (exitOnReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
 }
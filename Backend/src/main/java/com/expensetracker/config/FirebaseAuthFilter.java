@@ -0,0 +1,165 @@
+package com.expensetracker.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Authenticates API requests with a Firebase ID token ({@code Authorization: Bearer <token>}) and
+ * stores the verified uid in the {@link #USER_ID} request attribute, which controllers read instead of
+ * trusting a client-supplied header.
+ * <p>
+ * Tokens are verified locally by the Admin SDK against Google's public signing keys, which it caches
+ * for as long as their Cache-Control headers allow. Verified tokens are then cached until they expire,
+ * so a repeat request costs one cache lookup. Revocation is not checked; that needs a call to Firebase.
+ * <p>
+ * With {@code expense.auth.required=false} (or when there is no Firebase app, as in the embedded
+ * profile) requests without a token fall back to the X-User-Id header.
+ */
+public class FirebaseAuthFilter extends OncePerRequestFilter implements MeterBinder {
+
+    public static final String USER_ID = "com.expensetracker.userId";
+
+    private static final Logger logger = LoggerFactory.getLogger(FirebaseAuthFilter.class);
+    private static final String BEARER_PREFIX = "Bearer ";
+    /** EventSource cannot send headers, so the stream also takes the token as a parameter. */
+    private static final String STREAM_PATH = "/api/expenses/stream";
+
+    /** Resolved per verification so Firebase is only initialized once a token arrives. */
+    private final Supplier<FirebaseAuth> firebaseAuth;
+    private final boolean required;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    private record VerifiedToken(String uid, long expiresAtMillis) {
+    }
+
+    public FirebaseAuthFilter(Supplier<FirebaseAuth> firebaseAuth, boolean required, long maxTokens, ObjectMapper objectMapper) {
+        this.firebaseAuth = firebaseAuth;
+        this.required = required;
+        this.objectMapper = objectMapper;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxTokens)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+                        long remainingMillis = verified.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken verified, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        // CORS preflights carry no credentials
+        return !path.startsWith("/api/") || HttpMethod.OPTIONS.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = token(request);
+        if (token != null && firebaseAuth != null) {
+            String uid = verify(token);
+            if (uid == null) {
+                reject(response, "Invalid or expired ID token");
+                return;
+            }
+            request.setAttribute(USER_ID, uid);
+        } else if (required) {
+            reject(response, "A Firebase ID token is required");
+            return;
+        } else {
+            request.setAttribute(USER_ID, fallbackUserId(request));
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * The token's uid, or null if the token does not verify.
+     */
+    private String verify(String token) {
+        VerifiedToken cached = verifiedTokens.getIfPresent(token);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return cached.uid();
+        }
+
+        try {
+            FirebaseToken decoded = firebaseAuth.get().verifyIdToken(token);
+            long expiresAtSeconds = ((Number) decoded.getClaims().get("exp")).longValue();
+            verifiedTokens.put(token, new VerifiedToken(decoded.getUid(), TimeUnit.SECONDS.toMillis(expiresAtSeconds)));
+            return decoded.getUid();
+        } catch (FirebaseAuthException | IllegalArgumentException e) {
+            logger.warn("Rejected ID token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String token(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return authorization.substring(BEARER_PREFIX.length()).trim();
+        }
+        if (request.getRequestURI().endsWith(STREAM_PATH)) {
+            return request.getParameter("access_token");
+        }
+        return null;
+    }
+
+    private static String fallbackUserId(HttpServletRequest request) {
+        String userId = request.getHeader("X-User-Id");
+        if (userId == null && request.getRequestURI().endsWith(STREAM_PATH)) {
+            userId = request.getParameter("userId");
+        }
+        return userId;
+    }
+
+    private void reject(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", "Unauthorized", "message", message));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verifiedTokens, "verifiedTokens");
+    }
+}
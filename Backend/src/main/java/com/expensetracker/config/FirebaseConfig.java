@@ -8,8 +8,11 @@ import com.google.firebase.cloud.FirestoreClient;
 import com.google.cloud.firestore.Firestore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
 
 import jakarta.annotation.PostConstruct;
 import java.io.ByteArrayInputStream;
@@ -18,13 +21,30 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
+/**
+ * Firebase Admin SDK setup. The {@link Firestore} and {@link FirebaseAuth} clients are created on
+ * first use; with {@code expense.firebase.lazy-init=true} the credentials are not read until then
+ * either, so startup does no Firebase work at all (credential errors then surface on the first request).
+ */
 @Configuration
+@Profile("!embedded")
 public class FirebaseConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseConfig.class);
 
+    @Value("${expense.firebase.lazy-init:false}")
+    private boolean lazyInit;
+
     @PostConstruct
     public void initialize() {
+        if (lazyInit) {
+            logger.info("Firebase Admin SDK will be initialized on first use");
+        } else {
+            firebaseApp();
+        }
+    }
+
+    private synchronized FirebaseApp firebaseApp() {
         try {
             // Check if already initialized
             if (FirebaseApp.getApps().isEmpty()) {
@@ -51,11 +71,11 @@ public class FirebaseConfig {
                         .setCredentials(credentials)
                         .build();
 
-                FirebaseApp.initializeApp(options);
+                FirebaseApp app = FirebaseApp.initializeApp(options);
                 logger.info("✅ Firebase Admin SDK initialized successfully");
-            } else {
-                logger.info("✅ Firebase Admin SDK already initialized");
+                return app;
             }
+            return FirebaseApp.getInstance();
         } catch (IOException e) {
             logger.error("❌ Failed to initialize Firebase Admin SDK", e);
             throw new RuntimeException("Failed to initialize Firebase: " + e.getMessage(), e);
@@ -63,12 +83,14 @@ public class FirebaseConfig {
     }
 
     @Bean
+    @Lazy
     public FirebaseAuth firebaseAuth() {
-        return FirebaseAuth.getInstance();
+        return FirebaseAuth.getInstance(firebaseApp());
     }
 
     @Bean
+    @Lazy
     public Firestore firestore() {
-        return FirestoreClient.getFirestore();
+        return FirestoreClient.getFirestore(firebaseApp());
     }
 }
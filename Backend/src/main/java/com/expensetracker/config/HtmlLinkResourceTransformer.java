@@ -0,0 +1,58 @@
+package com.expensetracker.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceTransformerChain;
+import org.springframework.web.servlet.resource.ResourceTransformerSupport;
+import org.springframework.web.servlet.resource.TransformedResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the {@code <script src>} and {@code <link href>} URLs of HTML pages to their public,
+ * fingerprinted form, the way Spring's {@code CssLinkResourceTransformer} does for CSS.
+ * Absolute URLs (CDNs) and links to other pages are left alone.
+ */
+public class HtmlLinkResourceTransformer extends ResourceTransformerSupport {
+
+    private static final Pattern ASSET_LINK =
+            Pattern.compile("(<(?:script|link)\\b[^>]*?\\s(?:src|href)=\")([^\"]+)(\")", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public Resource transform(HttpServletRequest request, Resource resource, ResourceTransformerChain chain)
+            throws IOException {
+        resource = chain.transform(request, resource);
+
+        String filename = resource.getFilename();
+        if (filename == null || !filename.endsWith(".html") || isEncoded(resource)) {
+            return resource;
+        }
+
+        String content = new String(resource.getContentAsByteArray(), StandardCharsets.UTF_8);
+        Matcher matcher = ASSET_LINK.matcher(content);
+        StringBuilder transformed = new StringBuilder(content.length());
+        while (matcher.find()) {
+            String link = matcher.group(2);
+            String resolved = isLocal(link) ? resolveUrlPath(link, request, resource, chain) : null;
+            matcher.appendReplacement(transformed, Matcher.quoteReplacement(
+                    matcher.group(1) + (resolved != null ? resolved : link) + matcher.group(3)));
+        }
+        matcher.appendTail(transformed);
+        return new TransformedResource(resource, transformed.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** A precompressed variant cannot be rewritten as text. */
+    private static boolean isEncoded(Resource resource) {
+        return resource instanceof HttpResource httpResource
+                && httpResource.getResponseHeaders().containsKey(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    private static boolean isLocal(String link) {
+        return !link.contains(":") && !link.startsWith("//") && !link.startsWith("#");
+    }
+}
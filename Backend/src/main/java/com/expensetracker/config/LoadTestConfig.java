@@ -0,0 +1,43 @@
+package com.expensetracker.config;
+
+import com.expensetracker.repository.ExpenseRepository;
+import com.expensetracker.repository.LatencyInjectingExpenseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+/**
+ * The {@code loadtest} profile (which includes {@code embedded}) puts simulated Firestore latency in
+ * front of the in-memory repository, so the whole stack can be load tested without a Firebase project.
+ * Latencies are set with {@code expense.loadtest.*}.
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestConfig.class);
+
+    @Bean
+    public static BeanPostProcessor latencyInjectingRepository(Environment environment) {
+        long readMillis = environment.getProperty("expense.loadtest.read-latency-ms", Long.class, 20L);
+        long writeMillis = environment.getProperty("expense.loadtest.write-latency-ms", Long.class, 40L);
+        long jitterMillis = environment.getProperty("expense.loadtest.latency-jitter-ms", Long.class, 10L);
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ExpenseRepository repository
+                        && !(bean instanceof LatencyInjectingExpenseRepository)) {
+                    logger.info("Simulating storage latency for {}: reads {} ms, writes {} ms, +0-{} ms jitter",
+                            beanName, readMillis, writeMillis, jitterMillis);
+                    return new LatencyInjectingExpenseRepository(repository, readMillis, writeMillis, jitterMillis);
+                }
+                return bean;
+            }
+        };
+    }
+}
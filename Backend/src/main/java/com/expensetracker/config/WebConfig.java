@@ -1,28 +1,132 @@
 package com.expensetracker.config;
 
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.model.Expense;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.google.firebase.auth.FirebaseAuth;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
 
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Web configuration for serving static resources and CORS.
+ * <p>
+ * The build copies the Frontend folder to {@code classpath:/static/} and adds a {@code .gz} copy of each
+ * script and stylesheet. Pages link to scripts and stylesheets under content-hashed names
+ * ({@code app-<md5>.js}) that are cached for a year; pages themselves are revalidated by ETag.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebConfig.class);
+
+    /** Name given to assets by the content version strategy, e.g. styles-0123456789abcdef0123456789abcdef.css. */
+    private static final Pattern FINGERPRINTED = Pattern.compile(".*-[0-9a-f]{32}\\.(js|css)$");
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Get absolute path to Frontend folder
+        // Get absolute path to Frontend folder, used when the build has not packaged it
         String frontendPath = Paths.get("").toAbsolutePath().getParent().resolve("Frontend").toUri().toString();
-        
-        // Serve static files from Frontend folder
+
+        // Serve the packaged, precompressed copy first. Cache headers are set by StaticCacheHeaders.
         registry.addResourceHandler("/**")
-                .addResourceLocations(frontendPath, "classpath:/static/")
-                .setCachePeriod(0);
+                .addResourceLocations("classpath:/static/", frontendPath)
+                .setUseLastModified(false)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**/*.js", "/**/*.css"))
+                .addTransformer(new HtmlLinkResourceTransformer());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StaticCacheHeaders()).excludePathPatterns("/api/**");
+    }
+
+    /**
+     * Serializes {@link Expense} through the filter a response can narrow to the requested
+     * {@link ExpenseFields}; without one every field is written. Only the application's mapper is
+     * affected, so other mappers need no filter provider.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer expenseFieldsFilter() {
+        return builder -> builder
+                .mixIn(Expense.class, ExpenseFieldsFilter.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    /**
+     * Verifies Firebase ID tokens on /api/ requests; see {@link FirebaseAuthFilter}.
+     */
+    @Bean
+    public FirebaseAuthFilter firebaseAuthFilter(
+            ObjectProvider<FirebaseAuth> firebaseAuth,
+            ListableBeanFactory beanFactory,
+            ObjectMapper objectMapper,
+            @Value("${expense.auth.required:true}") boolean required,
+            @Value("${expense.auth.max-cached-tokens:10000}") long maxCachedTokens) {
+        // Checked by bean name so startup does not initialize Firebase
+        boolean firebaseAvailable = beanFactory.getBeanNamesForType(FirebaseAuth.class, true, false).length > 0;
+        if (!firebaseAvailable && required) {
+            throw new IllegalStateException(
+                    "expense.auth.required=true needs Firebase; set it to false to trust X-User-Id");
+        }
+        if (!required) {
+            logger.warn("API authentication optional: requests without an ID token are trusted by X-User-Id");
+        }
+        return new FirebaseAuthFilter(firebaseAvailable ? firebaseAuth::getObject : null,
+                required, maxCachedTokens, objectMapper);
+    }
+
+    @Bean
+    public FilterRegistrationBean<FirebaseAuthFilter> firebaseAuthFilterRegistration(FirebaseAuthFilter filter) {
+        FilterRegistrationBean<FirebaseAuthFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    /**
+     * ETag for pages and unversioned assets, so revalidation ends in 304 instead of a download.
+     * Last-Modified is not used: a page can change because an asset it links to did.
+     */
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> staticEtagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(
+                new ShallowEtagHeaderFilter() {
+                    @Override
+                    protected boolean shouldNotFilter(HttpServletRequest request) {
+                        String path = request.getRequestURI().substring(request.getContextPath().length());
+                        return path.startsWith("/api/") || path.startsWith("/actuator/");
+                    }
+                });
+        registration.addUrlPatterns("/*");
+        return registration;
     }
 
     @Override
@@ -54,4 +158,23 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(allowedOriginsEnv != null)  // Only if specific origins
                 .maxAge(3600);
     }
+
+    @JsonFilter(ExpenseFields.JSON_FILTER)
+    private interface ExpenseFieldsFilter {
+    }
+
+    /**
+     * Fingerprinted assets never change under their name; everything else is revalidated on each use.
+     */
+    private static class StaticCacheHeaders implements HandlerInterceptor {
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            CacheControl cacheControl = FINGERPRINTED.matcher(request.getRequestURI()).matches()
+                    ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                    : CacheControl.noCache();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            return true;
+        }
+    }
 }
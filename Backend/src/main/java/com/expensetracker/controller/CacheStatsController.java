@@ -0,0 +1,29 @@
+package com.expensetracker.controller;
+
+import com.expensetracker.service.ExpenseCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Exposes expense cache statistics for sizing the cache against memory limits.
+ */
+@RestController
+@RequestMapping("/api/cache")
+public class CacheStatsController {
+
+    @Autowired
+    private ExpenseCache expenseCache;
+
+    /**
+     * Get hit, miss and eviction counts for the expense caches.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCacheStats() {
+        return ResponseEntity.ok(expenseCache.stats());
+    }
+}
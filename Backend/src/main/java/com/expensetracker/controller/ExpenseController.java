@@ -1,22 +1,55 @@
 package com.expensetracker.controller;
 
+import com.expensetracker.config.FirebaseAuthFilter;
+import com.expensetracker.dto.BulkImportResponse;
+import com.expensetracker.dto.ExpenseAnalytics;
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.dto.ExpenseQuery;
 import com.expensetracker.dto.ExpenseRequest;
-import com.expensetracker.dto.ExpenseResponse;
+import com.expensetracker.dto.ExpenseSearchResults;
+import com.expensetracker.dto.ExpenseSummary;
 import com.expensetracker.model.Expense;
+import com.expensetracker.repository.ExpenseConflictException;
+import com.expensetracker.service.ExpenseAnalyticsService;
+import com.expensetracker.service.ExpenseImportReader;
+import com.expensetracker.service.ExpenseSearchService;
 import com.expensetracker.service.ExpenseService;
+import com.expensetracker.service.ExpenseStreamService;
+import com.expensetracker.service.StorageOverloadedException;
+import com.expensetracker.service.UserDataVersions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST API controller for expense operations.
@@ -27,58 +60,277 @@ import java.util.Map;
 public class ExpenseController {
 
     private static final Logger logger = LoggerFactory.getLogger(ExpenseController.class);
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_TOP = 50;
+    private static final int MAX_SEARCH_RESULTS = 100;
 
     @Autowired
     private ExpenseService expenseService;
 
+    @Autowired
+    private ExpenseAnalyticsService analyticsService;
+
+    @Autowired
+    private ExpenseSearchService searchService;
+
+    @Autowired
+    private UserDataVersions dataVersions;
+
+    @Autowired
+    private ExpenseStreamService streamService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
-     * Get all expenses with summary.
+     * Get all expenses with summary, or one page of them when limit or pageToken is given.
+     * Optional category, from/to, minAmount/maxAmount and sort parameters filter and order the list;
+     * the total is then the total of the matching expenses.
+     * fields (e.g. id,title,amount,category,date) limits the expense fields in the response, and
+     * Firestore sends only the document fields needed for them, the query and the total.
+     * The ETag changes whenever the user's data does; a matching If-None-Match is answered
+     * with 304 before anything is read.
+     * Returns a future so the servlet thread is released while Firestore answers the first page. The
+     * body is then written straight to the response a page at a time as later pages arrive, total and
+     * count after the array; if a later page fails to read, the connection is dropped before them.
      */
     @GetMapping
-    public ResponseEntity<ExpenseResponse> getAllExpenses(
-            @RequestHeader(value = "X-User-Id", required = false) String userId) {
-        List<Expense> expenses = expenseService.getAllExpenses(userId);
-        java.math.BigDecimal totalAmount = expenseService.getTotalAmount(userId);
-        ExpenseResponse response = new ExpenseResponse(expenses, totalAmount, expenses.size());
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getAllExpenses(
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String pageToken,
+            @RequestParam(required = false) String fields,
+            ExpenseQuery query,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
+        query.validate();
+        ExpenseFields expenseFields = ExpenseFields.parse(fields);
+
+        String eTag = dataVersions.eTag(userId, request.getQueryString());
+        if (eTag != null && matchesAny(ifNoneMatch, eTag)) {
+            return CompletableFuture.completedFuture(notModified(eTag));
+        }
+
+        if (limit != null || pageToken != null) {
+            int pageSize = limit != null ? limit : MAX_PAGE_SIZE;
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("limit must be at least 1");
+            }
+            return expenseService.getExpensesPageAsync(userId, query, Math.min(pageSize, MAX_PAGE_SIZE), pageToken,
+                            expenseFields)
+                    .thenApply(page -> listResponse(eTag, expenseFields, listWriter -> {
+                        listWriter.writePage(page.getExpenses());
+                        listWriter.writePageEnd(page.getNextPageToken());
+                    }));
+        }
+
+        // The total needs every amount, written or not
+        return expenseService.getExpensePagesAsync(userId, query, expenseFields.with(ExpenseFields.AMOUNT))
+                .thenApply(pages -> listResponse(eTag, expenseFields, listWriter -> {
+                    try {
+                        pages.forEach(page -> {
+                            try {
+                                listWriter.writePage(page);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    listWriter.writeEnd();
+                }));
+    }
+
+    /**
+     * Get the user's totals, per-category and per-month sums.
+     */
+    @GetMapping("/summary")
+    public CompletableFuture<ResponseEntity<ExpenseSummary>> getSummary(
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId) {
+        return expenseService.getSummaryAsync(userId).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Get the monthly trend, category and day-of-week breakdowns and the largest expenses
+     * for the user's expenses dated from/to (both optional, inclusive).
+     */
+    @GetMapping("/analytics")
+    public CompletableFuture<ResponseEntity<ExpenseAnalytics>> getAnalytics(
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "5") int top) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (top < 0 || top > MAX_TOP) {
+            throw new IllegalArgumentException("top must be between 0 and " + MAX_TOP);
+        }
+        return analyticsService.getAnalyticsAsync(userId, from, to, top).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Get what changed in the user's expenses since a token from an earlier call: created or modified
+     * expenses, the IDs of deleted ones and the token for next time, so a client can keep a local copy
+     * in sync. Without since, or with a token too old to continue, the response is a reset carrying
+     * the first page of the whole list; hasMore asks for the rest.
+     * Changes are found by their updatedAt stamp and deletes by their tombstone, which the backend and
+     * the frontend's direct Firestore writes both leave. A client that writes Firestore directly without
+     * them is not seen here until the next reset.
+     */
+    @GetMapping("/changes")
+    public CompletableFuture<ResponseEntity<ExpenseChanges>> getChanges(
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId,
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "500") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return expenseService.getChangesAsync(userId, since, limit).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Search the user's expense titles and categories as they type: every word of q must start a word
+     * (or, from three characters, appear inside one). Returns up to limit matches, best first.
+     */
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<ExpenseSearchResults>> search(
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+        return searchService.searchAsync(userId, q, limit).thenApply(result -> ResponseEntity.ok(
+                new ExpenseSearchResults(q, result.expenses(), result.total())));
+    }
+
+    /**
+     * Stream changes to the user's expenses as Server-Sent Events: {@code changes} events with the
+     * added, modified and removed expenses, and {@code resync} when the client should refetch its list.
+     * EventSource cannot set headers, so the ID token may be given as the access_token parameter.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId) {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("A user is required");
+        }
+        return streamService.subscribe(userId);
+    }
+
+    /**
+     * Export all of the user's expenses as CSV or NDJSON.
+     * Pages are written to the response as Firestore returns them, so memory use stays flat.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId,
+            @RequestParam(defaultValue = "csv") String format) {
+        // Reject an unknown format before the response is committed
+        if (!ExpenseExportWriter.FORMATS.contains(format)) {
+            throw new IllegalArgumentException("format must be csv or ndjson");
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            ExpenseExportWriter exportWriter = ExpenseExportWriter.create(format, writer, objectMapper);
+            exportWriter.writeHeader();
+            try {
+                expenseService.streamExpenses(userId, page -> {
+                    try {
+                        exportWriter.writePage(page);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ExpenseExportWriter.contentType(format)))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"expenses." + format + "\"")
+                .body(body);
     }
 
     /**
      * Get expense by ID.
+     * The ETag is the expense's version; Spring MVC answers a matching If-None-Match with 304
+     * and no body, and when the expense is cached nothing is read from Firestore.
+     * fields limits the response as for the list. The expense is still read whole: one document is
+     * little to transfer, and the whole copy is what the cache keeps for conditional updates.
+     * Another user's expense is answered with 404, the same as a missing one.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Expense> getExpenseById(@PathVariable String id) {
-        return expenseService.getExpenseById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public CompletableFuture<ResponseEntity<MappingJacksonValue>> getExpenseById(
+            @PathVariable String id,
+            @RequestParam(required = false) String fields,
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId) {
+        ExpenseFields expenseFields = ExpenseFields.parse(fields);
+        return expenseService.getExpenseByIdAsync(id, userId)
+                .thenApply(expense -> expense
+                        .map(found -> withETag(found).body(withFields(found, expenseFields)))
+                        .orElse(ResponseEntity.notFound().build()));
     }
 
     /**
      * Create a new expense.
      */
     @PostMapping
-    public ResponseEntity<Expense> createExpense(
+    public CompletableFuture<ResponseEntity<Expense>> createExpense(
             @Valid @RequestBody ExpenseRequest request,
-            @RequestHeader(value = "X-User-Id", required = false) String userId) {
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId) {
         Expense expense = new Expense();
         expense.setTitle(request.getTitle());
         expense.setAmount(request.getAmount());
         expense.setCategory(request.getCategory());
         expense.setDate(request.getDate());
 
-        Expense created = expenseService.createExpense(expense, userId);
-        logger.info("Created expense: {}", created);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        return expenseService.createExpenseAsync(expense, userId)
+                .thenApply(created -> {
+                    logger.info("Created expense: {}", created);
+                    return ResponseEntity.status(HttpStatus.CREATED).body(created);
+                });
+    }
+
+    /**
+     * Import a JSON array of expenses in one call.
+     * Rows are validated and written individually; the response reports each row's outcome.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkImportResponse> importExpensesJson(
+            InputStream body,
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId) throws IOException {
+        BulkImportResponse response = expenseService.importExpenses(
+                ExpenseImportReader.forJson(body, objectMapper), userId);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Import a CSV upload (title,amount,category,date) in one call.
+     */
+    @PostMapping(value = "/bulk", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<BulkImportResponse> importExpensesCsv(
+            InputStream body,
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId) {
+        BulkImportResponse response = expenseService.importExpenses(
+                ExpenseImportReader.forCsv(body), userId);
+        return ResponseEntity.ok(response);
     }
 
     /**
      * Update an existing expense.
+     * With an If-Match header the update is rejected with 409 if the expense changed since that version.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Expense> updateExpense(
+    public CompletableFuture<ResponseEntity<Expense>> updateExpense(
             @PathVariable String id,
             @Valid @RequestBody ExpenseRequest request,
-            @RequestHeader(value = "X-User-Id", required = false) String userId) {
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         
         Expense expense = new Expense();
         expense.setTitle(request.getTitle());
@@ -86,29 +338,137 @@ public class ExpenseController {
         expense.setCategory(request.getCategory());
         expense.setDate(request.getDate());
 
-        return expenseService.updateExpense(id, expense, userId)
-                .map(updated -> {
-                    logger.info("Updated expense: {}", updated);
-                    return ResponseEntity.ok(updated);
-                })
-                .orElse(ResponseEntity.notFound().build());
+        return expenseService.updateExpenseAsync(id, expense, userId, parseVersion(ifMatch))
+                .thenApply(result -> result
+                        .map(updated -> {
+                            logger.info("Updated expense: {}", updated);
+                            return withETag(updated).body(updated);
+                        })
+                        .orElse(ResponseEntity.notFound().build()));
     }
 
     /**
      * Delete an expense.
+     * With an If-Match header the delete is rejected with 409 if the expense changed since that version.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Map<String, String>> deleteExpense(
+    public CompletableFuture<ResponseEntity<Map<String, String>>> deleteExpense(
             @PathVariable String id,
-            @RequestHeader(value = "X-User-Id", required = false) String userId) {
-        boolean deleted = expenseService.deleteExpense(id, userId);
-        if (deleted) {
-            logger.info("Deleted expense with ID: {}", id);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Expense deleted successfully");
-            return ResponseEntity.ok(response);
+            @RequestAttribute(value = FirebaseAuthFilter.USER_ID, required = false) String userId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return expenseService.deleteExpenseAsync(id, userId, parseVersion(ifMatch))
+                .thenApply(deleted -> {
+                    if (deleted) {
+                        logger.info("Deleted expense with ID: {}", id);
+                        Map<String, String> response = new HashMap<>();
+                        response.put("message", "Expense deleted successfully");
+                        return ResponseEntity.ok(response);
+                    }
+                    return ResponseEntity.notFound().<Map<String, String>>build();
+                });
+    }
+
+    /**
+     * ETag carrying the expense's version, for use in If-Match.
+     */
+    private ResponseEntity.BodyBuilder withETag(Expense expense) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (expense.getVersion() != null) {
+            builder.eTag("\"" + expense.getVersion() + "\"");
+        }
+        return builder;
+    }
+
+    /**
+     * An expense body that Jackson writes with only {@code fields}, through the filter
+     * {@link ExpenseFields#JSON_FILTER}.
+     */
+    private static MappingJacksonValue withFields(Expense expense, ExpenseFields fields) {
+        MappingJacksonValue body = new MappingJacksonValue(expense);
+        if (!fields.isAll()) {
+            body.setFilters(new SimpleFilterProvider().addFilter(ExpenseFields.JSON_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(fields.names())));
+        }
+        return body;
+    }
+
+    /**
+     * 200 builder for a list response: carries the user's data ETag and asks clients to revalidate
+     * before reusing it. The body depends on the caller, so caches must key on its credentials.
+     */
+    private ResponseEntity.BodyBuilder withListETag(String eTag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.AUTHORIZATION, "X-User-Id");
+        if (eTag != null) {
+            builder.eTag(eTag);
+        }
+        return builder;
+    }
+
+    /**
+     * A list response whose body {@code content} writes through an {@link ExpenseListWriter}
+     * once Spring MVC hands over the response stream.
+     */
+    private ResponseEntity<StreamingResponseBody> listResponse(String eTag, ExpenseFields fields, ListContent content) {
+        StreamingResponseBody body = outputStream -> {
+            ExpenseListWriter listWriter = new ExpenseListWriter(
+                    objectMapper.getFactory().createGenerator(outputStream), fields);
+            listWriter.writeStart();
+            content.writeTo(listWriter);
+        };
+        return withListETag(eTag).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @FunctionalInterface
+    private interface ListContent {
+        void writeTo(ExpenseListWriter listWriter) throws IOException;
+    }
+
+    private <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.AUTHORIZATION, "X-User-Id")
+                .eTag(eTag)
+                .build();
+    }
+
+    /**
+     * Whether an If-None-Match header lists the given ETag (weak comparison) or is "*".
+     */
+    private boolean matchesAny(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse an If-Match header into the expected version; "*" or no header means any version.
+     */
+    private Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must be an ETag returned by this API");
         }
-        return ResponseEntity.notFound().build();
     }
 
     /**
@@ -127,6 +487,44 @@ public class ExpenseController {
         return errors;
     }
 
+    /**
+     * Exception handler for bad query parameters such as an invalid page token.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleIllegalArgument(IllegalArgumentException ex) {
+        logger.warn("Bad request: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Bad request");
+        error.put("message", ex.getMessage());
+        return error;
+    }
+
+    /**
+     * Exception handler for writes that lost a race with a concurrent change.
+     */
+    @ExceptionHandler(ExpenseConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleConflict(ExpenseConflictException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Conflict");
+        error.put("message", ex.getMessage() + "; reload it and try again");
+        return error;
+    }
+
+    /**
+     * Exception handler for storage calls shed by the concurrency limiter.
+     */
+    @ExceptionHandler(StorageOverloadedException.class)
+    public ResponseEntity<Map<String, String>> handleOverloaded(StorageOverloadedException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Service busy");
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
     /**
      * Global exception handler.
      */
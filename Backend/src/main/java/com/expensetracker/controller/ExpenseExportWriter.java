@@ -0,0 +1,105 @@
+package com.expensetracker.controller;
+
+import com.expensetracker.model.Expense;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes expenses to an export stream as CSV or newline-delimited JSON.
+ */
+abstract class ExpenseExportWriter {
+
+    static final Set<String> FORMATS = Set.of("csv", "ndjson");
+
+    protected final Writer writer;
+
+    protected ExpenseExportWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    static ExpenseExportWriter create(String format, Writer writer, ObjectMapper objectMapper) {
+        return switch (format) {
+            case "csv" -> new Csv(writer);
+            case "ndjson" -> new NdJson(writer, objectMapper.writerFor(Expense.class));
+            default -> throw new IllegalArgumentException("format must be csv or ndjson");
+        };
+    }
+
+    static String contentType(String format) {
+        return "csv".equals(format) ? "text/csv" : "application/x-ndjson";
+    }
+
+    /**
+     * Called once before the first page so the client receives bytes immediately.
+     */
+    void writeHeader() throws IOException {
+    }
+
+    void writePage(List<Expense> expenses) throws IOException {
+        for (Expense expense : expenses) {
+            write(expense);
+        }
+        writer.flush();
+    }
+
+    protected abstract void write(Expense expense) throws IOException;
+
+    private static final class Csv extends ExpenseExportWriter {
+
+        Csv(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            writer.write("id,title,amount,category,date\n");
+            writer.flush();
+        }
+
+        @Override
+        protected void write(Expense expense) throws IOException {
+            writer.write(escape(expense.getId()));
+            writer.write(',');
+            writer.write(escape(expense.getTitle()));
+            writer.write(',');
+            writer.write(expense.getAmount().toPlainString());
+            writer.write(',');
+            writer.write(escape(expense.getCategory()));
+            writer.write(',');
+            writer.write(expense.getDate() != null ? expense.getDate().toString() : "");
+            writer.write('\n');
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                    && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static final class NdJson extends ExpenseExportWriter {
+
+        private final ObjectWriter expenseWriter;
+
+        NdJson(Writer writer, ObjectWriter expenseWriter) {
+            super(writer);
+            this.expenseWriter = expenseWriter;
+        }
+
+        @Override
+        protected void write(Expense expense) throws IOException {
+            writer.write(expenseWriter.writeValueAsString(expense));
+            writer.write('\n');
+        }
+    }
+}
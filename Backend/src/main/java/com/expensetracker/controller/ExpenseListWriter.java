@@ -0,0 +1,180 @@
+package com.expensetracker.controller;
+
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Writes a list response straight to a {@link JsonGenerator} as pages of expenses arrive:
+ * the {@code expenses} array first, then {@code totalAmount} and {@code count}, the same document Jackson
+ * writes for an {@link com.expensetracker.dto.ExpenseResponse}. A single page ends with {@code count} and
+ * {@code nextPageToken} instead (see {@link #writePageEnd}).
+ * <p>
+ * Expenses are written field by field with pre-encoded names, in the order and format Jackson uses for
+ * {@link Expense}, instead of through a bean serializer; only the requested {@link ExpenseFields} are
+ * written. The total is summed in minor units as they go by, so its expenses must have their amounts
+ * even when the amount is not written. Nothing is kept once a page has been written.
+ */
+public final class ExpenseListWriter {
+
+    private static final SerializableString EXPENSES = new SerializedString("expenses");
+    private static final SerializableString TOTAL_AMOUNT = new SerializedString("totalAmount");
+    private static final SerializableString COUNT = new SerializedString("count");
+    private static final SerializableString NEXT_PAGE_TOKEN = new SerializedString("nextPageToken");
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString TITLE = new SerializedString("title");
+    private static final SerializableString AMOUNT = new SerializedString("amount");
+    private static final SerializableString CATEGORY = new SerializedString("category");
+    private static final SerializableString DATE = new SerializedString("date");
+    private static final SerializableString USER_ID = new SerializedString("userId");
+    private static final SerializableString VERSION = new SerializedString("version");
+
+    private final JsonGenerator generator;
+    private final boolean writeId;
+    private final boolean writeTitle;
+    private final boolean writeAmount;
+    private final boolean writeCategory;
+    private final boolean writeDate;
+    private final boolean writeUserId;
+    private final boolean writeVersion;
+    private final char[] dateChars = new char[10];
+    private long totalMinor;
+    private int count;
+
+    public ExpenseListWriter(JsonGenerator generator, ExpenseFields fields) {
+        this.generator = generator;
+        this.writeId = fields.includes(ExpenseFields.ID);
+        this.writeTitle = fields.includes(ExpenseFields.TITLE);
+        this.writeAmount = fields.includes(ExpenseFields.AMOUNT);
+        this.writeCategory = fields.includes(ExpenseFields.CATEGORY);
+        this.writeDate = fields.includes(ExpenseFields.DATE);
+        this.writeUserId = fields.includes(ExpenseFields.USER_ID);
+        this.writeVersion = fields.includes(ExpenseFields.VERSION);
+    }
+
+    public void writeStart() throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(EXPENSES);
+        generator.writeStartArray();
+    }
+
+    public void writePage(List<Expense> expenses) throws IOException {
+        for (Expense expense : expenses) {
+            write(expense);
+        }
+    }
+
+    /**
+     * Close the array, write the trailing total and count and flush.
+     */
+    public void writeEnd() throws IOException {
+        generator.writeEndArray();
+        generator.writeFieldName(TOTAL_AMOUNT);
+        generator.writeNumber(Amounts.fromMinor(totalMinor));
+        generator.writeFieldName(COUNT);
+        generator.writeNumber(count);
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Close the array of one page, write its count and the next page token and flush. Pages carry no total.
+     *
+     * @param nextPageToken the repository's opaque {@link com.expensetracker.model.ExpensePage#getNextPageToken()},
+     *                      passed back as {@code pageToken} for the following page; null on the last page,
+     *                      which then has no {@code nextPageToken}
+     */
+    public void writePageEnd(String nextPageToken) throws IOException {
+        generator.writeEndArray();
+        generator.writeFieldName(COUNT);
+        generator.writeNumber(count);
+        if (nextPageToken != null) {
+            generator.writeFieldName(NEXT_PAGE_TOKEN);
+            generator.writeString(nextPageToken);
+        }
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private void write(Expense expense) throws IOException {
+        if (expense.getAmount() != null) {
+            totalMinor += Amounts.toMinor(expense.getAmount());
+        }
+
+        generator.writeStartObject();
+        if (writeId) {
+            generator.writeFieldName(ID);
+            generator.writeString(expense.getId());
+        }
+        if (writeTitle) {
+            generator.writeFieldName(TITLE);
+            generator.writeString(expense.getTitle());
+        }
+        if (writeAmount) {
+            generator.writeFieldName(AMOUNT);
+            if (expense.getAmount() != null) {
+                generator.writeNumber(expense.getAmount());
+            } else {
+                generator.writeNull();
+            }
+        }
+        if (writeCategory) {
+            generator.writeFieldName(CATEGORY);
+            generator.writeString(expense.getCategory());
+        }
+        if (writeDate) {
+            generator.writeFieldName(DATE);
+            writeDate(expense.getDate());
+        }
+        if (writeUserId) {
+            generator.writeFieldName(USER_ID);
+            generator.writeString(expense.getUserId());
+        }
+        if (writeVersion) {
+            generator.writeFieldName(VERSION);
+            if (expense.getVersion() != null) {
+                generator.writeNumber(expense.getVersion());
+            } else {
+                generator.writeNull();
+            }
+        }
+        generator.writeEndObject();
+        count++;
+    }
+
+    /**
+     * ISO yyyy-MM-dd like {@link LocalDate#toString}, encoded into a reused buffer: formatting dates was
+     * most of the garbage left per expense.
+     */
+    private void writeDate(LocalDate date) throws IOException {
+        if (date == null) {
+            generator.writeNull();
+            return;
+        }
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            generator.writeString(date.toString());
+            return;
+        }
+        putDigits(year, 0, 4);
+        dateChars[4] = '-';
+        putDigits(date.getMonthValue(), 5, 2);
+        dateChars[7] = '-';
+        putDigits(date.getDayOfMonth(), 8, 2);
+        generator.writeString(dateChars, 0, dateChars.length);
+    }
+
+    private void putDigits(int value, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            dateChars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
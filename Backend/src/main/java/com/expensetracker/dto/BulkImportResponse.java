@@ -0,0 +1,46 @@
+package com.expensetracker.dto;
+
+import java.util.List;
+
+/**
+ * Response for a bulk import: counts plus one result per submitted row.
+ */
+public class BulkImportResponse {
+
+    private int created;
+    private int rejected;
+    private List<ImportRowResult> results;
+
+    public BulkImportResponse() {
+    }
+
+    public BulkImportResponse(int created, int rejected, List<ImportRowResult> results) {
+        this.created = created;
+        this.rejected = rejected;
+        this.results = results;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<ImportRowResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ImportRowResult> results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,126 @@
+package com.expensetracker.dto;
+
+import com.expensetracker.model.Expense;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chart data for a user's expenses in a date range: monthly trend, category and
+ * day-of-week breakdowns, and the largest expenses.
+ */
+public class ExpenseAnalytics {
+
+    private BigDecimal totalAmount;
+    private long count;
+    private List<MonthTotal> monthly;
+    private Map<String, BigDecimal> byCategory;
+    private Map<String, BigDecimal> byDayOfWeek;
+    private List<Expense> top;
+
+    public ExpenseAnalytics() {
+    }
+
+    public ExpenseAnalytics(BigDecimal totalAmount, long count, List<MonthTotal> monthly,
+                            Map<String, BigDecimal> byCategory, Map<String, BigDecimal> byDayOfWeek,
+                            List<Expense> top) {
+        this.totalAmount = totalAmount;
+        this.count = count;
+        this.monthly = monthly;
+        this.byCategory = byCategory;
+        this.byDayOfWeek = byDayOfWeek;
+        this.top = top;
+    }
+
+    /**
+     * Total and number of expenses in one month, e.g. "2024-03".
+     */
+    public static class MonthTotal {
+
+        private String month;
+        private BigDecimal amount;
+        private long count;
+
+        public MonthTotal() {
+        }
+
+        public MonthTotal(String month, BigDecimal amount, long count) {
+            this.month = month;
+            this.amount = amount;
+            this.count = count;
+        }
+
+        public String getMonth() {
+            return month;
+        }
+
+        public void setMonth(String month) {
+            this.month = month;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public List<MonthTotal> getMonthly() {
+        return monthly;
+    }
+
+    public void setMonthly(List<MonthTotal> monthly) {
+        this.monthly = monthly;
+    }
+
+    public Map<String, BigDecimal> getByCategory() {
+        return byCategory;
+    }
+
+    public void setByCategory(Map<String, BigDecimal> byCategory) {
+        this.byCategory = byCategory;
+    }
+
+    public Map<String, BigDecimal> getByDayOfWeek() {
+        return byDayOfWeek;
+    }
+
+    public void setByDayOfWeek(Map<String, BigDecimal> byDayOfWeek) {
+        this.byDayOfWeek = byDayOfWeek;
+    }
+
+    public List<Expense> getTop() {
+        return top;
+    }
+
+    public void setTop(List<Expense> top) {
+        this.top = top;
+    }
+}
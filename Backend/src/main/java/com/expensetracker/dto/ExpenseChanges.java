@@ -0,0 +1,73 @@
+package com.expensetracker.dto;
+
+import com.expensetracker.model.Expense;
+
+import java.util.List;
+
+/**
+ * What changed in a user's expenses since a change token: expenses created or modified since then,
+ * the IDs of expenses deleted since then, and the token to ask with next time.
+ * <p>
+ * When {@code reset} is set the client should replace its copy instead of applying a delta: the
+ * expenses are the first page of the user's complete list, and the pages after it are applied like
+ * changes. When {@code hasMore} is set another request with the new token returns the rest right away.
+ */
+public class ExpenseChanges {
+
+    private List<Expense> expenses;
+    private List<String> removed;
+    private String token;
+    private boolean hasMore;
+    private boolean reset;
+
+    public ExpenseChanges() {
+    }
+
+    public ExpenseChanges(List<Expense> expenses, List<String> removed, String token, boolean hasMore, boolean reset) {
+        this.expenses = expenses;
+        this.removed = removed;
+        this.token = token;
+        this.hasMore = hasMore;
+        this.reset = reset;
+    }
+
+    public List<Expense> getExpenses() {
+        return expenses;
+    }
+
+    public void setExpenses(List<Expense> expenses) {
+        this.expenses = expenses;
+    }
+
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(List<String> removed) {
+        this.removed = removed;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+}
@@ -0,0 +1,96 @@
+package com.expensetracker.dto;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The expense fields a response carries, from the {@code fields} parameter of {@code GET /api/expenses}
+ * and {@code GET /api/expenses/{id}}, e.g. {@code fields=id,title,amount,category,date}.
+ * Storage may leave the other fields of the expenses it reads unset, and responses leave them out.
+ */
+public final class ExpenseFields {
+
+    public static final String ID = "id";
+    public static final String TITLE = "title";
+    public static final String AMOUNT = "amount";
+    public static final String CATEGORY = "category";
+    public static final String DATE = "date";
+    public static final String USER_ID = "userId";
+    public static final String VERSION = "version";
+
+    /** Every field, in the order responses write them. */
+    public static final List<String> NAMES = List.of(ID, TITLE, AMOUNT, CATEGORY, DATE, USER_ID, VERSION);
+
+    public static final ExpenseFields ALL = new ExpenseFields(Set.copyOf(NAMES));
+
+    /** ID of the Jackson filter {@code Expense} is serialized through; see {@code WebConfig}. */
+    public static final String JSON_FILTER = "expenseFields";
+
+    private final Set<String> names;
+
+    private ExpenseFields(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Parse a comma-separated list of field names; no list means every field.
+     */
+    public static ExpenseFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> names = new HashSet<>();
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (!NAMES.contains(trimmed)) {
+                throw new IllegalArgumentException("fields must be a comma-separated list of " + String.join(", ", NAMES));
+            }
+            names.add(trimmed);
+        }
+        return of(names);
+    }
+
+    private static ExpenseFields of(Set<String> names) {
+        return names.size() == NAMES.size() ? ALL : new ExpenseFields(Set.copyOf(names));
+    }
+
+    public boolean includes(String name) {
+        return names.contains(name);
+    }
+
+    public boolean isAll() {
+        return names.size() == NAMES.size();
+    }
+
+    public Set<String> names() {
+        return names;
+    }
+
+    /**
+     * These fields and {@code more}.
+     */
+    public ExpenseFields with(String... more) {
+        Set<String> combined = new HashSet<>(names);
+        combined.addAll(List.of(more));
+        return combined.size() == names.size() ? this : of(combined);
+    }
+
+    /**
+     * These fields and the ones {@code query} filters and sorts on, so the query can still be applied
+     * to expenses that only have them.
+     */
+    public ExpenseFields withFieldsOf(ExpenseQuery query) {
+        ExpenseFields fields = with(query.sortsByAmount() ? AMOUNT : DATE);
+        if (query.getCategory() != null) {
+            fields = fields.with(CATEGORY);
+        }
+        if (query.hasDateRange()) {
+            fields = fields.with(DATE);
+        }
+        if (query.hasAmountRange()) {
+            fields = fields.with(AMOUNT);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,162 @@
+package com.expensetracker.dto;
+
+import com.expensetracker.model.Expense;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filters and sort order for listing a user's expenses, bound from the query string of
+ * {@code GET /api/expenses}. All filters are optional; dates and amounts are inclusive.
+ */
+public class ExpenseQuery {
+
+    public static final String DATE_DESC = "date-desc";
+    public static final String DATE_ASC = "date-asc";
+    public static final String AMOUNT_DESC = "amount-desc";
+    public static final String AMOUNT_ASC = "amount-asc";
+    private static final Set<String> SORTS = Set.of(DATE_DESC, DATE_ASC, AMOUNT_DESC, AMOUNT_ASC);
+
+    private String category;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private String sort = DATE_DESC;
+
+    public ExpenseQuery() {
+    }
+
+    /**
+     * Reject combinations that can never match or that are not supported.
+     */
+    public void validate() {
+        if (!SORTS.contains(sort)) {
+            throw new IllegalArgumentException("sort must be one of date-desc, date-asc, amount-desc, amount-asc");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (minAmount != null && maxAmount != null && minAmount.compareTo(maxAmount) > 0) {
+            throw new IllegalArgumentException("minAmount must not be greater than maxAmount");
+        }
+    }
+
+    /**
+     * Whether this is the default listing: no filters, newest first.
+     */
+    public boolean isDefault() {
+        return category == null && from == null && to == null
+                && minAmount == null && maxAmount == null && DATE_DESC.equals(sort);
+    }
+
+    public boolean sortsByAmount() {
+        return AMOUNT_DESC.equals(sort) || AMOUNT_ASC.equals(sort);
+    }
+
+    public boolean isDescending() {
+        return DATE_DESC.equals(sort) || AMOUNT_DESC.equals(sort);
+    }
+
+    public boolean hasDateRange() {
+        return from != null || to != null;
+    }
+
+    public boolean hasAmountRange() {
+        return minAmount != null || maxAmount != null;
+    }
+
+    public boolean matches(Expense expense) {
+        if (category != null && !category.equals(expense.getCategory())) {
+            return false;
+        }
+        if (from != null && (expense.getDate() == null || expense.getDate().isBefore(from))) {
+            return false;
+        }
+        if (to != null && (expense.getDate() == null || expense.getDate().isAfter(to))) {
+            return false;
+        }
+        if (minAmount != null && expense.getAmount().compareTo(minAmount) < 0) {
+            return false;
+        }
+        return maxAmount == null || expense.getAmount().compareTo(maxAmount) <= 0;
+    }
+
+    /**
+     * The sort order, with ties broken by ID in the same direction so pages are stable.
+     */
+    public Comparator<Expense> comparator() {
+        Comparator<Expense> comparator = sortsByAmount()
+                ? Comparator.comparing(Expense::getAmount)
+                : Comparator.comparing(Expense::getDate, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()));
+        comparator = comparator.thenComparing(Expense::getId);
+        return isDescending() ? comparator.reversed() : comparator;
+    }
+
+    /**
+     * Filter and sort an already loaded list.
+     */
+    public List<Expense> apply(List<Expense> expenses) {
+        return expenses.stream()
+                .filter(this::matches)
+                .sorted(comparator())
+                .toList();
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category == null || category.isBlank() ? null : category.trim();
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(BigDecimal minAmount) {
+        this.minAmount = minAmount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public void setMaxAmount(BigDecimal maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort == null || sort.isBlank() ? DATE_DESC : sort.trim();
+    }
+}
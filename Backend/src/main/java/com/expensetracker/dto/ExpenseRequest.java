@@ -18,6 +18,7 @@ public class ExpenseRequest {
     @NotNull(message = "Amount is required")
     @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
     @DecimalMax(value = "999999999.99", message = "Amount is too large")
+    @Digits(integer = 9, fraction = 2, message = "Amount can have at most 2 decimal places")
     private BigDecimal amount;
 
     @NotBlank(message = "Category is required")
@@ -0,0 +1,58 @@
+package com.expensetracker.dto;
+
+import com.expensetracker.model.Expense;
+
+import java.util.List;
+
+/**
+ * Best matches of a title and category search, best first, with the number of all matches.
+ */
+public class ExpenseSearchResults {
+
+    private String query;
+    private List<Expense> expenses;
+    private int count;
+    private int total;
+
+    public ExpenseSearchResults() {
+    }
+
+    public ExpenseSearchResults(String query, List<Expense> expenses, int total) {
+        this.query = query;
+        this.expenses = expenses;
+        this.count = expenses.size();
+        this.total = total;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public List<Expense> getExpenses() {
+        return expenses;
+    }
+
+    public void setExpenses(List<Expense> expenses) {
+        this.expenses = expenses;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+}
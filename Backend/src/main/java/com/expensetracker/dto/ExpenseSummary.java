@@ -0,0 +1,58 @@
+package com.expensetracker.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Running totals for one user's expenses, read from the user's summary document.
+ */
+public class ExpenseSummary {
+
+    private BigDecimal totalAmount;
+    private Long count;
+    private Map<String, BigDecimal> byCategory;
+    private Map<String, BigDecimal> byMonth;
+
+    public ExpenseSummary() {
+    }
+
+    public ExpenseSummary(BigDecimal totalAmount, Long count,
+                          Map<String, BigDecimal> byCategory, Map<String, BigDecimal> byMonth) {
+        this.totalAmount = totalAmount;
+        this.count = count;
+        this.byCategory = byCategory;
+        this.byMonth = byMonth;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+
+    public Map<String, BigDecimal> getByCategory() {
+        return byCategory;
+    }
+
+    public void setByCategory(Map<String, BigDecimal> byCategory) {
+        this.byCategory = byCategory;
+    }
+
+    public Map<String, BigDecimal> getByMonth() {
+        return byMonth;
+    }
+
+    public void setByMonth(Map<String, BigDecimal> byMonth) {
+        this.byMonth = byMonth;
+    }
+}
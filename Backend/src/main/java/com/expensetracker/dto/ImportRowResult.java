@@ -0,0 +1,63 @@
+package com.expensetracker.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * Outcome of importing one row of a bulk upload.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportRowResult {
+
+    public static final String CREATED = "created";
+    public static final String INVALID = "invalid";
+    public static final String FAILED = "failed";
+
+    private int row;
+    private String status;
+    private String id;
+    private Map<String, String> errors;
+
+    public ImportRowResult() {
+    }
+
+    public ImportRowResult(int row, String status, String id, Map<String, String> errors) {
+        this.row = row;
+        this.status = status;
+        this.id = id;
+        this.errors = errors;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<String, String> errors) {
+        this.errors = errors;
+    }
+}
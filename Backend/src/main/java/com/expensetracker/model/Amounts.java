@@ -0,0 +1,50 @@
+package com.expensetracker.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+
+/**
+ * Money amounts as {@code long} minor units (cents, paise) at a fixed scale of two decimal places.
+ * Storage and aggregation work on minor units; {@link BigDecimal} is only used at the API edge.
+ */
+public final class Amounts {
+
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_UNIT = 100;
+
+    private Amounts() {
+    }
+
+    /**
+     * Convert an amount to minor units, rounding half up past the second decimal place.
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * Sum the amounts of a list of expenses exactly.
+     */
+    public static BigDecimal total(Collection<Expense> expenses) {
+        long totalMinor = 0;
+        for (Expense expense : expenses) {
+            totalMinor += toMinor(expense.getAmount());
+        }
+        return fromMinor(totalMinor);
+    }
+
+    public static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Convert minor units stored at another scale to {@link #SCALE}.
+     */
+    public static long rescale(long minor, int scale) {
+        if (scale == SCALE) {
+            return minor;
+        }
+        return toMinor(BigDecimal.valueOf(minor, scale));
+    }
+}
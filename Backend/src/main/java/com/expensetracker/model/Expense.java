@@ -20,6 +20,7 @@ public class Expense {
     @NotNull(message = "Amount is required")
     @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
     @DecimalMax(value = "999999999.99", message = "Amount must be less than 1 billion")
+    @Digits(integer = 9, fraction = 2, message = "Amount can have at most 2 decimal places")
     private BigDecimal amount;
     
     @NotBlank(message = "Category is required")
@@ -32,6 +33,8 @@ public class Expense {
     
     private String userId;
     
+    private Long version;  // Changes on every write; send back in If-Match for conditional updates
+    
     // Constructors
     public Expense() {
     }
@@ -92,4 +95,12 @@ public class Expense {
     public void setUserId(String userId) {
         this.userId = userId;
     }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
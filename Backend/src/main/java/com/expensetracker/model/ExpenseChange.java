@@ -0,0 +1,37 @@
+package com.expensetracker.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One expense added to, modified in or removed from a user's list.
+ * A removal carries only the ID.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExpenseChange {
+
+    public static final String ADDED = "added";
+    public static final String MODIFIED = "modified";
+    public static final String REMOVED = "removed";
+
+    private final String type;
+    private final String id;
+    private final Expense expense;
+
+    public ExpenseChange(String type, String id, Expense expense) {
+        this.type = type;
+        this.id = id;
+        this.expense = expense;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Expense getExpense() {
+        return expense;
+    }
+}
@@ -0,0 +1,26 @@
+package com.expensetracker.model;
+
+import java.util.List;
+
+/**
+ * One page of a user's expenses plus the token for the page that follows it.
+ * The token is null when there are no more pages.
+ */
+public class ExpensePage {
+
+    private final List<Expense> expenses;
+    private final String nextPageToken;
+
+    public ExpensePage(List<Expense> expenses, String nextPageToken) {
+        this.expenses = expenses;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Expense> getExpenses() {
+        return expenses;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
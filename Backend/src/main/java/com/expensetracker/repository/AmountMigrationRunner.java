@@ -0,0 +1,121 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.model.Amounts;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Precondition;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.expensetracker.repository.FirestoreFutures.toCompletableFuture;
+
+/**
+ * One-off backfill of {@code amountMinor}/{@code amountScale} on expense documents written before
+ * amounts were stored in minor units, or changed since by a client that only writes {@code amount}.
+ * Enable with {@code expense.migration.minor-units=true}; it runs in the background after startup.
+ * <p>
+ * Reads work without it, falling back to the {@code amount} double. Each document is only written if it
+ * is unchanged since it was read, so concurrent edits win. Summaries need no migration: ones in the old
+ * format are rebuilt from the expenses on first read.
+ */
+@Component
+@Profile("!embedded")
+@ConditionalOnProperty(name = "expense.migration.minor-units", havingValue = "true")
+public class AmountMigrationRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmountMigrationRunner.class);
+    private static final String COLLECTION_NAME = "expenses";
+
+    @Autowired
+    @Lazy
+    private Firestore firestore;
+
+    @Value("${expense.migration.page-size:500}")
+    private int pageSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread thread = new Thread(this::migrate, "amount-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void migrate() {
+        logger.info("Starting minor-unit amount migration");
+        AtomicLong migrated = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long scanned = 0;
+
+        BulkWriter bulkWriter = firestore.bulkWriter();
+        try {
+            Query query = firestore.collection(COLLECTION_NAME).orderBy(FieldPath.documentId()).limit(pageSize);
+            DocumentSnapshot last = null;
+            List<QueryDocumentSnapshot> documents;
+            do {
+                Query page = last != null ? query.startAfter(last) : query;
+                documents = page.get().get().getDocuments();
+                for (QueryDocumentSnapshot document : documents) {
+                    scanned++;
+                    Map<String, Object> update = migration(document);
+                    if (update == null) {
+                        continue;
+                    }
+                    toCompletableFuture(bulkWriter.update(document.getReference(), update,
+                            Precondition.updatedAt(document.getUpdateTime())))
+                            .whenComplete((writeResult, error) -> {
+                                if (error == null) {
+                                    migrated.incrementAndGet();
+                                } else {
+                                    failed.incrementAndGet();
+                                    logger.warn("Skipped expense {}: {}", document.getId(), error.getMessage());
+                                }
+                            });
+                }
+                if (!documents.isEmpty()) {
+                    last = documents.get(documents.size() - 1);
+                }
+            } while (documents.size() == pageSize);
+
+            bulkWriter.close();
+            logger.info("Amount migration finished: {} documents scanned, {} migrated, {} skipped",
+                    scanned, migrated.get(), failed.get());
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            logger.error("Amount migration stopped after {} documents", scanned, e);
+        }
+    }
+
+    /**
+     * The fields to write, or null if the document is already up to date.
+     */
+    private Map<String, Object> migration(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        if (data == null || !(data.get("amount") instanceof Number) && data.get("amountMinor") == null) {
+            return null;
+        }
+        long amountMinor = ExpenseDocuments.amountMinor(data);
+        Number storedMinor = (Number) data.get("amountMinor");
+        Number storedScale = (Number) data.get("amountScale");
+        if (storedMinor != null && storedMinor.longValue() == amountMinor
+                && storedScale != null && storedScale.intValue() == Amounts.SCALE) {
+            return null;
+        }
+        return Map.of("amountMinor", amountMinor, "amountScale", Amounts.SCALE);
+    }
+}
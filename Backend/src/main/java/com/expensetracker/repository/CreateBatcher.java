@@ -0,0 +1,153 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.model.Expense;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Write-behind coalescing of expense creates into batch commits.
+ * <p>
+ * Creates are queued and committed together once {@code maxBatchSize} are waiting or the oldest has
+ * waited {@code maxLatency}, whichever comes first. Each caller's future completes only when the
+ * commit holding its expense has been acknowledged, so a completed create is as durable as an
+ * unbatched one. A batch commits atomically: if it fails, every create in it fails with the same
+ * error and none of them is stored. The price is up to {@code maxLatency} of extra latency per create.
+ */
+final class CreateBatcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CreateBatcher.class);
+    /** Counted in Micrometer's global registry, like the document conversion failures. */
+    private static final String BATCH_SIZE = "expense.repository.create.batch.size";
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final Function<List<Expense>, CompletableFuture<Void>> commit;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "expense-create-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    private record Pending(Expense expense, CompletableFuture<Expense> future) {
+    }
+
+    /**
+     * @param commit stores a batch of expenses in one commit, giving each its ID and version
+     */
+    CreateBatcher(int maxBatchSize, Duration maxLatency, Function<List<Expense>, CompletableFuture<Void>> commit) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.commit = commit;
+    }
+
+    /**
+     * Queue a create. Once the batcher is closed the returned future fails straight away.
+     */
+    CompletableFuture<Expense> submit(Expense expense) {
+        CompletableFuture<Expense> future = new CompletableFuture<>();
+        List<Pending> full = null;
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Create batcher is closed"));
+            }
+            pending.add(new Pending(expense, future));
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flush, maxLatencyNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            commit(full);
+        }
+        return future;
+    }
+
+    void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            commit(batch);
+        }
+    }
+
+    /**
+     * Commit whatever is queued and wait briefly for it to be acknowledged, then stop the timer.
+     */
+    @Override
+    public void close() {
+        List<Pending> batch;
+        synchronized (this) {
+            closed = true;
+            batch = takePending();
+        }
+        scheduler.shutdownNow();
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            commit(batch).get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Final batch of {} expenses was not acknowledged on shutdown", batch.size(), e);
+        }
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private CompletableFuture<Void> commit(List<Pending> batch) {
+        List<Expense> expenses = new ArrayList<>(batch.size());
+        for (Pending item : batch) {
+            expenses.add(item.expense());
+        }
+
+        Metrics.summary(BATCH_SIZE).record(batch.size());
+        CompletableFuture<Void> committed;
+        try {
+            committed = commit.apply(expenses);
+        } catch (RuntimeException e) {
+            committed = CompletableFuture.failedFuture(e);
+        }
+        return committed.whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.error("Error committing batch of {} expenses", batch.size(), error);
+            }
+            for (Pending item : batch) {
+                if (error == null) {
+                    item.future().complete(item.expense());
+                } else {
+                    item.future().completeExceptionally(error);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,910 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.dto.ExpenseQuery;
+import com.expensetracker.dto.ExpenseSummary;
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.ExpenseChange;
+import com.expensetracker.model.ExpensePage;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Embedded single-node expense storage, enabled with the {@code embedded} Spring profile.
+ * <p>
+ * All expenses are held in memory and indexed by (userId, date) and (userId, category), so reads
+ * never leave the process. Every write is appended to a log segment before it is applied; after
+ * {@code expense.embedded.snapshot-every} writes the state is written to a snapshot in the
+ * background and older segments are deleted. On startup the snapshot is loaded and newer log
+ * entries are replayed.
+ * <p>
+ * Change tokens are log sequence numbers. Deletions are remembered in memory from the snapshot
+ * loaded at startup on, up to {@code expense.embedded.max-tombstones}; an older token gets a reset.
+ * <p>
+ * Stored {@link Expense} instances are shared with readers and must not be modified;
+ * writes always store a copy.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedExpenseRepository implements ExpenseRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedExpenseRepository.class);
+    private static final String SNAPSHOT_FILE = "snapshot.ndjson";
+    private static final String SEGMENT_PREFIX = "expenses-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final char[] ID_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    /**
+     * Newest first, ties broken by ID descending, matching the Firestore ordering.
+     */
+    private static final Comparator<SortKey> NEWEST_FIRST = Comparator
+            .comparing(SortKey::date, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+            .thenComparing(SortKey::id)
+            .reversed();
+
+    private static final NavigableMap<SortKey, Expense> EMPTY = new TreeMap<>(NEWEST_FIRST);
+    private static final ExpenseQuery DEFAULT_QUERY = new ExpenseQuery();
+    /** IDs that sort before and after every real ID, for range bounds. */
+    private static final String FIRST_ID = "";
+    private static final String LAST_ID = "\uffff";
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Expense> byId = new HashMap<>();
+    private final Map<String, UserIndex> byUser = new HashMap<>();
+    private final Map<String, List<ChangeListener>> watchers = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<Long, String>> tombstonesByUser = new HashMap<>();
+    private final ArrayDeque<Tombstone> tombstones = new ArrayDeque<>();
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "embedded-expense-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${expense.embedded.data-dir:data}")
+    private String dataDir;
+
+    @Value("${expense.embedded.snapshot-every:10000}")
+    private int snapshotEvery;
+
+    @Value("${expense.embedded.fsync:false}")
+    private boolean fsync;
+
+    @Value("${expense.embedded.max-tombstones:100000}")
+    private int maxTombstones;
+
+    private Path directory;
+    private long sequence;
+    private long writesSinceSnapshot;
+    /** Deletions at or before this sequence number may have been forgotten. */
+    private long tombstoneHorizon;
+    private FileOutputStream segmentStream;
+    private BufferedWriter segmentWriter;
+
+    /**
+     * Sort key for the per-user indexes.
+     */
+    private record SortKey(LocalDate date, String id) {
+        static SortKey of(Expense expense) {
+            return new SortKey(expense.getDate(), expense.getId());
+        }
+    }
+
+    /**
+     * One line of a log segment or snapshot.
+     */
+    private record LogEntry(long seq, String op, String id, String title, String amount,
+                            String category, String date, String userId) {
+    }
+
+    /**
+     * A deleted expense, kept so change queries can report it.
+     */
+    private record Tombstone(long seq, String userId, String id) {
+    }
+
+    /**
+     * A user's expenses in date order, the same per category, by version (the sequence number of
+     * their last write), and running totals in minor units.
+     */
+    private static final class UserIndex {
+        final NavigableMap<SortKey, Expense> byDate = new TreeMap<>(NEWEST_FIRST);
+        final NavigableMap<Long, Expense> byVersion = new TreeMap<>();
+        final Map<String, NavigableMap<SortKey, Expense>> byCategory = new HashMap<>();
+        final Map<String, Long> categoryTotals = new HashMap<>();
+        final Map<String, Long> monthTotals = new HashMap<>();
+        long totalMinor;
+
+        void add(Expense expense) {
+            SortKey key = SortKey.of(expense);
+            byDate.put(key, expense);
+            byVersion.put(expense.getVersion(), expense);
+            byCategory.computeIfAbsent(expense.getCategory(), category -> new TreeMap<>(NEWEST_FIRST))
+                    .put(key, expense);
+            adjustTotals(expense, Amounts.toMinor(expense.getAmount()));
+        }
+
+        void remove(Expense expense) {
+            SortKey key = SortKey.of(expense);
+            byDate.remove(key);
+            byVersion.remove(expense.getVersion());
+            NavigableMap<SortKey, Expense> category = byCategory.get(expense.getCategory());
+            if (category != null) {
+                category.remove(key);
+                if (category.isEmpty()) {
+                    byCategory.remove(expense.getCategory());
+                }
+            }
+            adjustTotals(expense, -Amounts.toMinor(expense.getAmount()));
+        }
+
+        private void adjustTotals(Expense expense, long amount) {
+            totalMinor += amount;
+            merge(categoryTotals, expense.getCategory(), amount);
+            if (expense.getDate() != null) {
+                merge(monthTotals, expense.getDate().toString().substring(0, 7), amount);
+            }
+        }
+
+        private static void merge(Map<String, Long> totals, String key, long amount) {
+            long value = totals.getOrDefault(key, 0L) + amount;
+            if (value == 0) {
+                totals.remove(key);
+            } else {
+                totals.put(key, value);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = Paths.get(dataDir).toAbsolutePath();
+        Files.createDirectories(directory);
+
+        long snapshotSequence = loadSnapshot();
+        sequence = snapshotSequence;
+        tombstoneHorizon = snapshotSequence;
+        for (Path segment : segments()) {
+            replaySegment(segment, snapshotSequence);
+        }
+        startSegment();
+
+        logger.info("📦 Embedded expense store opened at {} with {} expenses (sequence {})",
+                directory, byId.size(), sequence);
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        snapshotExecutor.shutdown();
+        snapshotExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        lock.writeLock().lock();
+        try {
+            if (writesSinceSnapshot > 0) {
+                writeSnapshot(rotateSegment());
+            }
+            segmentWriter.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUser(String userId) {
+        lock.readLock().lock();
+        try {
+            UserIndex index = byUser.get(userId);
+            List<Expense> expenses = index != null ? new ArrayList<>(index.byDate.values()) : new ArrayList<>();
+            return CompletableFuture.completedFuture(expenses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Expenses are held whole in memory, so every field is returned whatever {@code fields} asks for.
+     */
+    @Override
+    public CompletableFuture<List<Expense>> find(String userId, ExpenseQuery query, ExpenseFields fields) {
+        lock.readLock().lock();
+        try {
+            UserIndex index = byUser.get(userId);
+            List<Expense> expenses = index != null ? select(index, query, null, Integer.MAX_VALUE) : new ArrayList<>();
+            return CompletableFuture.completedFuture(expenses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<ExpensePage> findPage(String userId, ExpenseQuery query, int limit, String pageToken,
+                                                   ExpenseFields fields) {
+        Expense after = pageToken != null && !pageToken.isEmpty() ? decodePageToken(pageToken, query) : null;
+
+        lock.readLock().lock();
+        try {
+            UserIndex index = byUser.get(userId);
+            if (index == null) {
+                return CompletableFuture.completedFuture(new ExpensePage(List.of(), null));
+            }
+
+            // One extra tells whether another page follows
+            List<Expense> page = select(index, query, after, limit + 1);
+            String nextPageToken = null;
+            if (page.size() > limit) {
+                page = page.subList(0, limit);
+                nextPageToken = encodePageToken(page.get(limit - 1), query);
+            }
+            return CompletableFuture.completedFuture(new ExpensePage(page, nextPageToken));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamByUser(String userId, int pageSize, ExpenseFields fields, Consumer<List<Expense>> pageConsumer) {
+        List<Expense> expenses = findByUser(userId).join();
+        for (int start = 0; start < expenses.size(); start += pageSize) {
+            pageConsumer.accept(expenses.subList(start, Math.min(start + pageSize, expenses.size())));
+        }
+    }
+
+    /**
+     * Walks the user's expenses by version and deletions by sequence number after the token's
+     * two positions, so the work is proportional to the changes rather than the history.
+     * A reset is paged newest first like {@link #findPage}, and the change walk resumes from the
+     * sequence number it started at.
+     */
+    @Override
+    public CompletableFuture<ExpenseChanges> findChanges(String userId, String sinceToken, int limit) {
+        ChangePosition since = sinceToken != null && !sinceToken.isEmpty() ? decodeChangeToken(sinceToken) : null;
+
+        lock.readLock().lock();
+        try {
+            UserIndex index = byUser.get(userId);
+            // A token from before the forgotten deletions, or from another store, cannot be continued
+            if (since == null || since.removedUpTo() < tombstoneHorizon
+                    || since.expensesUpTo() > sequence || since.removedUpTo() > sequence) {
+                return CompletableFuture.completedFuture(resetPage(index, sequence, null, limit));
+            }
+            if (since.resetAfter() != null) {
+                return CompletableFuture.completedFuture(resetPage(index, since.expensesUpTo(), since.resetAfter(), limit));
+            }
+
+            List<Expense> expenses = new ArrayList<>();
+            long expensesUpTo = sequence;
+            if (index != null) {
+                for (Expense expense : index.byVersion.tailMap(since.expensesUpTo(), false).values()) {
+                    if (expenses.size() == limit) {
+                        expensesUpTo = expenses.get(limit - 1).getVersion();
+                        break;
+                    }
+                    expenses.add(expense);
+                }
+            }
+
+            List<String> removed = new ArrayList<>();
+            long removedUpTo = sequence;
+            NavigableMap<Long, String> userTombstones = tombstonesByUser.getOrDefault(userId, Collections.emptyNavigableMap());
+            for (Map.Entry<Long, String> tombstone : userTombstones.tailMap(since.removedUpTo(), false).entrySet()) {
+                if (removed.size() == limit) {
+                    removedUpTo = tombstone.getKey() - 1;
+                    break;
+                }
+                removed.add(tombstone.getValue());
+            }
+
+            boolean hasMore = expensesUpTo < sequence || removedUpTo < sequence;
+            return CompletableFuture.completedFuture(new ExpenseChanges(
+                    expenses, removed, encodeChangeToken(expensesUpTo, removedUpTo), hasMore, false));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One page of a reset that started at sequence number {@code startedAt}, after {@code after}
+     * (null for the first page). The last page has more to read when something was written since
+     * the reset started. Call with the read lock held.
+     */
+    private ExpenseChanges resetPage(UserIndex index, long startedAt, Expense after, int limit) {
+        List<Expense> page = index != null ? select(index, DEFAULT_QUERY, after, limit + 1) : new ArrayList<>();
+        String token;
+        boolean hasMore;
+        if (page.size() > limit) {
+            page = new ArrayList<>(page.subList(0, limit));
+            token = encodeResetToken(startedAt, encodePageToken(page.get(limit - 1), DEFAULT_QUERY));
+            hasMore = true;
+        } else {
+            token = encodeChangeToken(startedAt, startedAt);
+            hasMore = startedAt < sequence;
+        }
+        return new ExpenseChanges(page, List.of(), token, hasMore, after == null);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> findById(String id) {
+        lock.readLock().lock();
+        try {
+            return CompletableFuture.completedFuture(Optional.ofNullable(byId.get(id)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Expense> create(Expense expense) {
+        lock.writeLock().lock();
+        try {
+            String id;
+            do {
+                id = newId();
+            } while (byId.containsKey(id));
+            expense.setId(id);
+
+            Expense stored = copyOf(expense);
+            put(stored);
+            expense.setVersion(stored.getVersion());
+            return CompletableFuture.completedFuture(expense);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checked and applied under the write lock; the version is the log sequence number of the last write.
+     */
+    @Override
+    public CompletableFuture<Optional<Expense>> update(String id, Expense updated, String requesterId,
+                                                       Long expectedVersion, Expense known) {
+        lock.writeLock().lock();
+        try {
+            Expense previous = byId.get(id);
+            if (previous == null) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+            if (expectedVersion != null && !expectedVersion.equals(previous.getVersion())) {
+                return CompletableFuture.failedFuture(new ExpenseConflictException(id));
+            }
+            if (!isOwnedBy(previous, requesterId, "update")) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+
+            Expense stored = copyOf(updated);
+            stored.setId(id);
+            put(stored);
+            updated.setVersion(stored.getVersion());
+            return CompletableFuture.completedFuture(Optional.of(previous));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> delete(String id, String requesterId,
+                                                       Long expectedVersion, Expense known) {
+        lock.writeLock().lock();
+        try {
+            Expense previous = byId.get(id);
+            if (previous == null) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+            if (expectedVersion != null && !expectedVersion.equals(previous.getVersion())) {
+                return CompletableFuture.failedFuture(new ExpenseConflictException(id));
+            }
+            if (!isOwnedBy(previous, requesterId, "delete")) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+
+            append(new LogEntry(++sequence, "delete", id, null, null, null, null, null));
+            applyRemoval(id, sequence);
+            afterWrite();
+            notifyWatchers(previous.getUserId(), new ExpenseChange(ExpenseChange.REMOVED, id, null));
+            return CompletableFuture.completedFuture(Optional.of(previous));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<ExpenseSummary> findSummary(String userId) {
+        lock.readLock().lock();
+        try {
+            UserIndex index = byUser.get(userId);
+            if (index == null) {
+                return CompletableFuture.completedFuture(
+                        new ExpenseSummary(Amounts.fromMinor(0), 0L, new TreeMap<>(), new TreeMap<>()));
+            }
+            return CompletableFuture.completedFuture(new ExpenseSummary(
+                    Amounts.fromMinor(index.totalMinor),
+                    (long) index.byDate.size(),
+                    toAmounts(index.categoryTotals),
+                    toAmounts(index.monthTotals)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes notify the user's listeners under the write lock, so each listener sees changes in log order.
+     */
+    @Override
+    public Watch watch(String userId, ChangeListener listener) {
+        watchers.computeIfAbsent(userId, key -> new CopyOnWriteArrayList<>()).add(listener);
+        return () -> watchers.computeIfPresent(userId, (key, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    /**
+     * Inserts are applied immediately; there is nothing to flush on close.
+     */
+    @Override
+    public BulkInsert bulkInsert(String userId) {
+        return new BulkInsert() {
+            @Override
+            public CompletableFuture<Expense> add(Expense expense) {
+                return create(expense);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Up to {@code limit} matching expenses that sort after {@code after} (or from the start).
+     * Date orders walk the (user, date) or (user, category) index from the start of the date range
+     * and stop at its end; amount orders sort the matches. Caller holds the read lock.
+     */
+    private List<Expense> select(UserIndex index, ExpenseQuery query, Expense after, int limit) {
+        NavigableMap<SortKey, Expense> source = query.getCategory() != null
+                ? index.byCategory.getOrDefault(query.getCategory(), EMPTY)
+                : index.byDate;
+        List<Expense> selected = new ArrayList<>();
+
+        if (!query.sortsByAmount()) {
+            NavigableMap<SortKey, Expense> ordered = query.isDescending() ? source : source.descendingMap();
+            if (after != null) {
+                ordered = ordered.tailMap(SortKey.of(after), false);
+            } else if (query.isDescending() && query.getTo() != null) {
+                ordered = ordered.tailMap(new SortKey(query.getTo(), LAST_ID), true);
+            } else if (!query.isDescending() && query.getFrom() != null) {
+                ordered = ordered.tailMap(new SortKey(query.getFrom(), FIRST_ID), true);
+            }
+
+            for (Expense expense : ordered.values()) {
+                if (selected.size() == limit || pastDateRange(expense, query)) {
+                    break;
+                }
+                if (query.matches(expense)) {
+                    selected.add(expense);
+                }
+            }
+            return selected;
+        }
+
+        for (Expense expense : source.values()) {
+            if (query.matches(expense)) {
+                selected.add(expense);
+            }
+        }
+        Comparator<Expense> order = query.comparator();
+        selected.sort(order);
+
+        int start = 0;
+        if (after != null) {
+            int position = Collections.binarySearch(selected, after, order);
+            start = position >= 0 ? position + 1 : -(position + 1);
+        }
+        int end = (int) Math.min(selected.size(), (long) start + limit);
+        return new ArrayList<>(selected.subList(start, end));
+    }
+
+    /**
+     * Whether a date-ordered walk has gone past the end of the query's date range.
+     */
+    private static boolean pastDateRange(Expense expense, ExpenseQuery query) {
+        if (query.isDescending()) {
+            return query.getFrom() != null && (expense.getDate() == null || expense.getDate().isBefore(query.getFrom()));
+        }
+        return query.getTo() != null && expense.getDate() != null && expense.getDate().isAfter(query.getTo());
+    }
+
+    /**
+     * Log and apply an insert or replacement, stamping its version. Caller holds the write lock.
+     */
+    private void put(Expense expense) throws IOException {
+        expense.setVersion(++sequence);
+        append(new LogEntry(sequence, "put", expense.getId(), expense.getTitle(),
+                expense.getAmount().toPlainString(), expense.getCategory(),
+                expense.getDate() != null ? expense.getDate().toString() : null, expense.getUserId()));
+        Expense previous = byId.get(expense.getId());
+        applyPut(expense);
+        afterWrite();
+
+        if (previous == null) {
+            notifyWatchers(expense.getUserId(), new ExpenseChange(ExpenseChange.ADDED, expense.getId(), expense));
+        } else if (Objects.equals(previous.getUserId(), expense.getUserId())) {
+            notifyWatchers(expense.getUserId(), new ExpenseChange(ExpenseChange.MODIFIED, expense.getId(), expense));
+        } else {
+            notifyWatchers(previous.getUserId(), new ExpenseChange(ExpenseChange.REMOVED, expense.getId(), null));
+            notifyWatchers(expense.getUserId(), new ExpenseChange(ExpenseChange.ADDED, expense.getId(), expense));
+        }
+    }
+
+    private void notifyWatchers(String userId, ExpenseChange change) {
+        List<ChangeListener> listeners = userId != null ? watchers.get(userId) : null;
+        if (listeners != null) {
+            for (ChangeListener listener : listeners) {
+                listener.onChanges(List.of(change));
+            }
+        }
+    }
+
+    private void applyPut(Expense expense) {
+        Expense previous = byId.get(expense.getId());
+        if (previous != null && !Objects.equals(previous.getUserId(), expense.getUserId())) {
+            // Gone from the previous owner's list
+            addTombstone(new Tombstone(expense.getVersion(), previous.getUserId(), expense.getId()));
+        }
+        applyDelete(expense.getId());
+        byId.put(expense.getId(), expense);
+        byUser.computeIfAbsent(expense.getUserId(), userId -> new UserIndex()).add(expense);
+    }
+
+    private void applyDelete(String id) {
+        Expense previous = byId.remove(id);
+        if (previous != null) {
+            UserIndex index = byUser.get(previous.getUserId());
+            index.remove(previous);
+            if (index.byDate.isEmpty()) {
+                byUser.remove(previous.getUserId());
+            }
+        }
+    }
+
+    /**
+     * Delete an expense and remember the deletion for change queries.
+     */
+    private void applyRemoval(String id, long seq) {
+        Expense previous = byId.get(id);
+        applyDelete(id);
+        if (previous != null) {
+            addTombstone(new Tombstone(seq, previous.getUserId(), id));
+        }
+    }
+
+    /**
+     * Past {@code maxTombstones} the oldest deletion is forgotten and tokens from before it get a reset.
+     */
+    private void addTombstone(Tombstone tombstone) {
+        tombstonesByUser.computeIfAbsent(tombstone.userId(), userId -> new TreeMap<>())
+                .put(tombstone.seq(), tombstone.id());
+        tombstones.addLast(tombstone);
+        while (tombstones.size() > maxTombstones) {
+            Tombstone oldest = tombstones.removeFirst();
+            tombstonesByUser.computeIfPresent(oldest.userId(), (userId, userTombstones) -> {
+                userTombstones.remove(oldest.seq());
+                return userTombstones.isEmpty() ? null : userTombstones;
+            });
+            tombstoneHorizon = oldest.seq();
+        }
+    }
+
+    private boolean isOwnedBy(Expense expense, String requesterId, String action) {
+        if (requesterId != null && !requesterId.equals(expense.getUserId())) {
+            logger.warn("User {} attempted to {} expense {} owned by {}",
+                    requesterId, action, expense.getId(), expense.getUserId());
+            return false;
+        }
+        return true;
+    }
+
+    private void append(LogEntry entry) throws IOException {
+        segmentWriter.write(objectMapper.writeValueAsString(entry));
+        segmentWriter.write('\n');
+        segmentWriter.flush();
+        if (fsync) {
+            segmentStream.getFD().sync();
+        }
+    }
+
+    /**
+     * Kick off a background snapshot once enough writes have accumulated. Caller holds the write lock.
+     */
+    private void afterWrite() throws IOException {
+        if (++writesSinceSnapshot >= snapshotEvery) {
+            Snapshot snapshot = rotateSegment();
+            snapshotExecutor.execute(() -> {
+                try {
+                    writeSnapshot(snapshot);
+                } catch (IOException e) {
+                    logger.error("Error writing embedded expense snapshot", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * State captured for a snapshot: everything up to {@code sequence}.
+     */
+    private record Snapshot(long sequence, List<Expense> expenses) {
+    }
+
+    /**
+     * Start a new log segment and capture the current state. Caller holds the write lock.
+     */
+    private Snapshot rotateSegment() throws IOException {
+        Snapshot snapshot = new Snapshot(sequence, new ArrayList<>(byId.values()));
+        segmentWriter.close();
+        startSegment();
+        writesSinceSnapshot = 0;
+        return snapshot;
+    }
+
+    private void startSegment() throws IOException {
+        Path segment = directory.resolve(SEGMENT_PREFIX + String.format("%020d", sequence + 1) + SEGMENT_SUFFIX);
+        segmentStream = new FileOutputStream(segment.toFile(), true);
+        segmentWriter = new BufferedWriter(new OutputStreamWriter(segmentStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write a snapshot next to the log, swap it in atomically and drop the segments it covers.
+     */
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+            writer.write(objectMapper.writeValueAsString(
+                    new LogEntry(snapshot.sequence(), "snapshot", null, null, null, null, null, null)));
+            writer.write('\n');
+            for (Expense expense : snapshot.expenses()) {
+                // Each expense keeps the sequence number of its last write, which is its version
+                writer.write(objectMapper.writeValueAsString(new LogEntry(expense.getVersion(), "put",
+                        expense.getId(), expense.getTitle(), expense.getAmount().toPlainString(),
+                        expense.getCategory(), expense.getDate() != null ? expense.getDate().toString() : null,
+                        expense.getUserId())));
+                writer.write('\n');
+            }
+            writer.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path segment : segments()) {
+            if (segmentStart(segment) <= snapshot.sequence()) {
+                Files.deleteIfExists(segment);
+            }
+        }
+        logger.info("Wrote embedded expense snapshot of {} expenses at sequence {}",
+                snapshot.expenses().size(), snapshot.sequence());
+    }
+
+    /**
+     * Load the snapshot, if any, and return the sequence number it covers.
+     */
+    private long loadSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            long snapshotSequence = objectMapper.readValue(reader.readLine(), LogEntry.class).seq();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                applyPut(fromEntry(objectMapper.readValue(line, LogEntry.class)));
+            }
+            return snapshotSequence;
+        }
+    }
+
+    /**
+     * Replay the entries of one segment that are newer than the snapshot.
+     * A torn last line from a crash mid-write ends the segment.
+     */
+    private void replaySegment(Path segment, long snapshotSequence) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LogEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, LogEntry.class);
+                } catch (JsonProcessingException e) {
+                    logger.warn("Ignoring unreadable entry at end of {}", segment.getFileName());
+                    break;
+                }
+                if (entry.seq() <= snapshotSequence) {
+                    continue;
+                }
+                if ("delete".equals(entry.op())) {
+                    applyRemoval(entry.id(), entry.seq());
+                } else {
+                    applyPut(fromEntry(entry));
+                }
+                sequence = entry.seq();
+                writesSinceSnapshot++;
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(EmbeddedExpenseRepository::segmentStart))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Segments are named after the first sequence number they may contain.
+     */
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static Expense fromEntry(LogEntry entry) {
+        Expense expense = new Expense(entry.id(), entry.title(), new BigDecimal(entry.amount()),
+                entry.category(), entry.date() != null ? LocalDate.parse(entry.date()) : null);
+        expense.setUserId(entry.userId());
+        expense.setVersion(entry.seq());
+        return expense;
+    }
+
+    private static Map<String, BigDecimal> toAmounts(Map<String, Long> totals) {
+        Map<String, BigDecimal> amounts = new TreeMap<>();
+        totals.forEach((key, minor) -> amounts.put(key, Amounts.fromMinor(minor)));
+        return amounts;
+    }
+
+    private static Expense copyOf(Expense expense) {
+        Expense copy = new Expense(expense.getId(), expense.getTitle(), expense.getAmount(),
+                expense.getCategory(), expense.getDate());
+        copy.setUserId(expense.getUserId());
+        return copy;
+    }
+
+    /**
+     * 20 random alphanumeric characters, like Firestore auto IDs.
+     */
+    private static String newId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] id = new char[20];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = ID_ALPHABET[random.nextInt(ID_ALPHABET.length)];
+        }
+        return new String(id);
+    }
+
+    private static String encodeChangeToken(long expensesUpTo, long removedUpTo) {
+        String raw = "changes:" + expensesUpTo + ":" + removedUpTo;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A change token for the page of a reset after {@code pageToken}; page tokens are base64url, so
+     * they never contain ':'.
+     */
+    private static String encodeResetToken(long startedAt, String pageToken) {
+        String raw = "reset:" + startedAt + ":" + pageToken;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Where a change token resumes: the sequence numbers its expenses and deletions are complete up to
+     * and, part way through a reset, a stand-in for the last expense sent.
+     */
+    private record ChangePosition(long expensesUpTo, long removedUpTo, Expense resetAfter) {
+    }
+
+    private static ChangePosition decodeChangeToken(String changeToken) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(changeToken), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length == 3 && parts[0].equals("reset")) {
+                long startedAt = Long.parseLong(parts[1]);
+                return new ChangePosition(startedAt, startedAt, decodePageToken(parts[2], DEFAULT_QUERY));
+            }
+            if (parts.length != 3 || !parts[0].equals("changes")) {
+                throw new IllegalArgumentException("Not a change token");
+            }
+            return new ChangePosition(Long.parseLong(parts[1]), Long.parseLong(parts[2]), null);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid change token", e);
+        }
+    }
+
+    private static String encodePageToken(Expense last, ExpenseQuery query) {
+        String raw = query.sortsByAmount()
+                ? "amount:" + last.getAmount().toPlainString() + ":" + last.getId()
+                : "date:" + (last.getDate() != null ? last.getDate().toString() : "") + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a page token into a stand-in for the last expense of the previous page.
+     */
+    private static Expense decodePageToken(String pageToken, ExpenseQuery query) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            Expense after = new Expense();
+            after.setId(parts[2]);
+            if (query.sortsByAmount() && parts[0].equals("amount")) {
+                after.setAmount(new BigDecimal(parts[1]));
+            } else if (!query.sortsByAmount() && parts[0].equals("date")) {
+                after.setDate(parts[1].isEmpty() ? null : LocalDate.parse(parts[1]));
+            } else {
+                throw new IllegalArgumentException("Page token is for a different sort order");
+            }
+            return after;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+    }
+}
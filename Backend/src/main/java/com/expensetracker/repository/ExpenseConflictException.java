@@ -0,0 +1,14 @@
+package com.expensetracker.repository;
+
+/**
+ * Thrown when a conditional write finds the expense at a different version than expected,
+ * because it was changed or deleted concurrently.
+ */
+public class ExpenseConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ExpenseConflictException(String id) {
+        super("Expense " + id + " was modified concurrently");
+    }
+}
@@ -0,0 +1,176 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts between {@link Expense} objects and Firestore expense documents.
+ */
+public final class ExpenseDocuments {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseDocuments.class);
+    /** Counted in Micrometer's global registry, which Spring Boot's registry is added to. */
+    private static final String CONVERSION_FAILURES = "expense.documents.conversion.failures";
+
+    private ExpenseDocuments() {
+    }
+
+    /**
+     * Convert Firestore document to Expense object.
+     * Returns null for documents that cannot be converted.
+     */
+    public static Expense toExpense(DocumentSnapshot document) {
+        return toExpense(document, ExpenseFields.ALL);
+    }
+
+    /**
+     * Convert a document read with {@link #select(ExpenseFields)} projection; only those fields are set.
+     * ID and version come with every document.
+     */
+    static Expense toExpense(DocumentSnapshot document, ExpenseFields fields) {
+        Expense expense = fromMap(document.getId(), document.getData(), fields);
+        if (expense != null) {
+            expense.setVersion(toVersion(document.getUpdateTime()));
+        }
+        return expense;
+    }
+
+    /**
+     * The document fields that hold {@code fields}, for {@code Query.select}. The amount takes its
+     * exact minor units and the double they are checked against. A projection needs at least one
+     * field, so an empty one selects the document ID.
+     */
+    static FieldPath[] select(ExpenseFields fields) {
+        List<FieldPath> paths = new ArrayList<>();
+        for (String name : List.of(ExpenseFields.TITLE, ExpenseFields.CATEGORY, ExpenseFields.DATE, ExpenseFields.USER_ID)) {
+            if (fields.includes(name)) {
+                paths.add(FieldPath.of(name));
+            }
+        }
+        if (fields.includes(ExpenseFields.AMOUNT)) {
+            paths.add(FieldPath.of("amount"));
+            paths.add(FieldPath.of("amountMinor"));
+            paths.add(FieldPath.of("amountScale"));
+        }
+        if (paths.isEmpty()) {
+            paths.add(FieldPath.documentId());
+        }
+        return paths.toArray(new FieldPath[0]);
+    }
+
+    /**
+     * The document's amount in minor units at {@link Amounts#SCALE}.
+     * {@code amountMinor} is authoritative unless the document predates it, or a client that only knows
+     * the {@code amount} double has since changed the amount without it.
+     */
+    static long amountMinor(Map<String, Object> data) {
+        Number amount = (Number) data.get("amount");
+        Number minor = (Number) data.get("amountMinor");
+        if (minor != null) {
+            Number scale = (Number) data.get("amountScale");
+            long amountMinor = Amounts.rescale(minor.longValue(), scale != null ? scale.intValue() : Amounts.SCALE);
+            if (amount == null || Math.round(amount.doubleValue() * Amounts.MINOR_PER_UNIT) == amountMinor) {
+                return amountMinor;
+            }
+        }
+        return Amounts.toMinor(BigDecimal.valueOf(amount.doubleValue()));
+    }
+
+    /**
+     * A document's update time as a version number: microseconds since the epoch,
+     * which is the precision Firestore keeps.
+     */
+    static Long toVersion(Timestamp updateTime) {
+        if (updateTime == null) {
+            return null;
+        }
+        return updateTime.getSeconds() * 1_000_000 + updateTime.getNanos() / 1_000;
+    }
+
+    static Timestamp toUpdateTime(long version) {
+        return Timestamp.ofTimeMicroseconds(version);
+    }
+
+    /**
+     * Convert a document's ID and fields to an Expense object.
+     * Returns null for documents that cannot be converted.
+     */
+    public static Expense fromMap(String id, Map<String, Object> data) {
+        return fromMap(id, data, ExpenseFields.ALL);
+    }
+
+    private static Expense fromMap(String id, Map<String, Object> data, ExpenseFields fields) {
+        try {
+            Expense expense = new Expense();
+            expense.setId(id);
+            expense.setTitle((String) data.get("title"));
+            if (fields.includes(ExpenseFields.AMOUNT)) {
+                expense.setAmount(Amounts.fromMinor(amountMinor(data)));
+            }
+            expense.setCategory((String) data.get("category"));
+            
+            // Convert Firestore Timestamp to LocalDate
+            Timestamp timestamp = (Timestamp) data.get("date");
+            if (timestamp != null) {
+                Date date = timestamp.toDate();
+                expense.setDate(date.toInstant()
+                        .atZone(ZoneId.systemDefault())
+                        .toLocalDate());
+            }
+            
+            expense.setUserId((String) data.get("userId"));
+            return expense;
+        } catch (Exception e) {
+            logger.error("Error converting document to expense", e);
+            Metrics.counter(CONVERSION_FAILURES).increment();
+            return null;
+        }
+    }
+
+    /**
+     * Convert Expense object to Firestore map.
+     */
+    public static Map<String, Object> toMap(Expense expense) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("title", expense.getTitle());
+        // Exact minor units for the backend; the double stays for clients that read Firestore directly
+        map.put("amountMinor", Amounts.toMinor(expense.getAmount()));
+        map.put("amountScale", Amounts.SCALE);
+        map.put("amount", expense.getAmount().doubleValue());
+        map.put("category", expense.getCategory());
+        
+        // Convert LocalDate to Firestore Timestamp
+        if (expense.getDate() != null) {
+            map.put("date", toTimestamp(expense.getDate()));
+        }
+        
+        map.put("userId", expense.getUserId());
+        // Commit time of every write, for change queries; the frontend's direct Firestore writes set it too
+        map.put("updatedAt", FieldValue.serverTimestamp());
+        return map;
+    }
+
+    /**
+     * The stored timestamp for a date: the start of that day in the server's time zone.
+     */
+    static Timestamp toTimestamp(LocalDate date) {
+        return Timestamp.of(Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    }
+}
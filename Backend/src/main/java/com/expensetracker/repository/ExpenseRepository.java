@@ -0,0 +1,148 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.dto.ExpenseQuery;
+import com.expensetracker.dto.ExpenseSummary;
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.ExpenseChange;
+import com.expensetracker.model.ExpensePage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Storage for expenses and the per-user summaries derived from them.
+ * Lists are always ordered newest first. Implementations keep each user's summary
+ * consistent with their expenses on every write.
+ * <p>
+ * Methods that take {@link ExpenseFields} only promise those fields on the expenses they return;
+ * implementations may leave the others unset to read less.
+ */
+public interface ExpenseRepository {
+
+    /**
+     * Find all of a user's expenses.
+     */
+    CompletableFuture<List<Expense>> findByUser(String userId);
+
+    /**
+     * Find all of a user's expenses that match {@code query}, in its sort order.
+     */
+    CompletableFuture<List<Expense>> find(String userId, ExpenseQuery query, ExpenseFields fields);
+
+    /**
+     * Find one page of a user's expenses that match {@code query}, in its sort order.
+     * A page may hold fewer than {@code limit} expenses even when more follow; the end is reached
+     * when the next page token is null. The token is opaque, only meaningful to the implementation
+     * that issued it, and only valid with the same query.
+     */
+    CompletableFuture<ExpensePage> findPage(String userId, ExpenseQuery query, int limit, String pageToken,
+                                            ExpenseFields fields);
+
+    /**
+     * Hand a user's expenses to {@code pageConsumer} in pages of at most {@code pageSize}.
+     * Blocks until every page has been consumed.
+     */
+    void streamByUser(String userId, int pageSize, ExpenseFields fields, Consumer<List<Expense>> pageConsumer);
+
+    /**
+     * Find what changed in a user's expenses after {@code sinceToken}, a token from an earlier result:
+     * expenses created or modified since, IDs of expenses deleted since, and the token to use next.
+     * At most {@code limit} changes of each kind are returned; when more follow the result says so and
+     * its token continues from there. Without a token, or with one older than deletions are kept for,
+     * the result is a reset: every current expense, newest first, {@code limit} at a time, with only the
+     * first page flagged. Changes made while it is paged follow its last page. Tokens are opaque like
+     * page tokens.
+     */
+    CompletableFuture<ExpenseChanges> findChanges(String userId, String sinceToken, int limit);
+
+    /**
+     * Find an expense by ID.
+     */
+    CompletableFuture<Optional<Expense>> findById(String id);
+
+    /**
+     * Store a new expense, assigning its ID and version.
+     */
+    CompletableFuture<Expense> create(Expense expense);
+
+    /**
+     * Replace an expense if it exists and {@code requesterId} owns it (or is null).
+     * The ownership check and the write happen as one atomic step. When {@code expectedVersion} is
+     * given, the write fails with {@link ExpenseConflictException} unless the stored expense is still
+     * at that version. {@code known} is the caller's last copy of the expense, or null; when it is
+     * current, implementations may skip reading the expense before writing.
+     * Completes with the version that was replaced, or empty if nothing was written;
+     * {@code updated} is given its new version.
+     */
+    CompletableFuture<Optional<Expense>> update(String id, Expense updated, String requesterId,
+                                                Long expectedVersion, Expense known);
+
+    /**
+     * Delete an expense if it exists and {@code requesterId} owns it (or is null).
+     * {@code expectedVersion} and {@code known} work as for {@link #update}.
+     * Completes with the deleted expense, or empty if nothing was deleted.
+     */
+    CompletableFuture<Optional<Expense>> delete(String id, String requesterId,
+                                                Long expectedVersion, Expense known);
+
+    /**
+     * Get a user's running totals.
+     */
+    CompletableFuture<ExpenseSummary> findSummary(String userId);
+
+    /**
+     * Start inserting many expenses for one user.
+     * The caller must close the returned insert to flush outstanding writes.
+     */
+    BulkInsert bulkInsert(String userId);
+
+    /**
+     * Watch a user's expenses for changes made from now on, by this or any other instance.
+     * The listener is called on an implementation thread, once per batch of changes, and must not block.
+     * Close the returned watch to stop.
+     */
+    Watch watch(String userId, ChangeListener listener);
+
+    /**
+     * A bulk insert in progress.
+     */
+    interface BulkInsert extends AutoCloseable {
+
+        /**
+         * Queue an expense for insertion; completes with the stored expense.
+         */
+        CompletableFuture<Expense> add(Expense expense);
+
+        /**
+         * Flush outstanding writes and wait for them to finish.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Receives the changes of a {@link #watch}.
+     */
+    interface ChangeListener {
+
+        void onChanges(List<ExpenseChange> changes);
+
+        /**
+         * The watch has failed and will deliver nothing more.
+         */
+        void onError(Throwable error);
+    }
+
+    /**
+     * A registered {@link #watch}.
+     */
+    interface Watch extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
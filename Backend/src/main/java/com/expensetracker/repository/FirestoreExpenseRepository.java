@@ -0,0 +1,826 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.dto.ExpenseQuery;
+import com.expensetracker.dto.ExpenseSummary;
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.ExpenseChange;
+import com.expensetracker.model.ExpensePage;
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import io.grpc.Status;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.expensetracker.repository.FirestoreFutures.toCompletableFuture;
+
+/**
+ * Expense storage in Firebase Firestore.
+ * Expenses live in the {@code expenses} collection and each user's running totals in
+ * {@code expense_summaries}; every write updates both in one batch. Every expense write stamps
+ * {@code updatedAt} with the commit time, and a delete leaves a tombstone in {@code expense_tombstones}
+ * in the same batch, so changes since a point in time can be queried.
+ */
+@Repository
+@Profile("!embedded")
+public class FirestoreExpenseRepository implements ExpenseRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreExpenseRepository.class);
+    private static final String COLLECTION_NAME = "expenses";
+    private static final String SUMMARY_COLLECTION_NAME = "expense_summaries";
+    private static final String ANONYMOUS_SUMMARY_ID = "_anonymous";
+    private static final String TOMBSTONE_COLLECTION_NAME = "expense_tombstones";
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final ExpenseQuery DEFAULT_QUERY = new ExpenseQuery();
+    /** Summaries in minor units; summaries without this format are rebuilt on first read. */
+    private static final long SUMMARY_FORMAT = 2;
+    /** Each create adds a document write and at most one summary write; a batch holds 500. */
+    private static final int MAX_CREATE_BATCH_SIZE = 250;
+
+    @Autowired
+    @Lazy
+    private Firestore firestore;
+
+    @Value("${expense.import.initial-ops-per-second:500}")
+    private int importInitialOpsPerSecond;
+
+    @Value("${expense.import.max-ops-per-second:5000}")
+    private int importMaxOpsPerSecond;
+
+    @Value("${expense.write-batching.enabled:false}")
+    private boolean writeBatchingEnabled;
+
+    @Value("${expense.write-batching.max-batch-size:100}")
+    private int writeBatchingMaxBatchSize;
+
+    @Value("${expense.write-batching.max-latency-ms:10}")
+    private long writeBatchingMaxLatencyMs;
+
+    @Value("${expense.changes.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+
+    private CreateBatcher createBatcher;
+
+    @PostConstruct
+    void startCreateBatcher() {
+        if (writeBatchingEnabled) {
+            int maxBatchSize = Math.max(1, Math.min(writeBatchingMaxBatchSize, MAX_CREATE_BATCH_SIZE));
+            createBatcher = new CreateBatcher(maxBatchSize, Duration.ofMillis(writeBatchingMaxLatencyMs),
+                    this::commitCreates);
+            logger.info("Batching expense creates: up to {} per commit, waiting at most {} ms",
+                    maxBatchSize, writeBatchingMaxLatencyMs);
+        }
+    }
+
+    /**
+     * Commit creates still waiting for their batch before the Firestore client goes away.
+     */
+    @PreDestroy
+    void stopCreateBatcher() {
+        if (createBatcher != null) {
+            createBatcher.close();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUser(String userId) {
+        Query query = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .orderBy("date", Query.Direction.DESCENDING);
+
+        return toCompletableFuture(query.get())
+                .thenApply(querySnapshot -> toExpenses(querySnapshot.getDocuments()));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> find(String userId, ExpenseQuery expenseQuery, ExpenseFields fields) {
+        ExpenseFields read = fields.withFieldsOf(expenseQuery);
+        return toCompletableFuture(projected(filteredQuery(userId, expenseQuery), read).get())
+                .thenApply(querySnapshot -> matching(toExpenses(querySnapshot.getDocuments(), read), expenseQuery));
+    }
+
+    /**
+     * Pages are keyed on (sort field, document ID) so each request reads only {@code limit} documents.
+     */
+    @Override
+    public CompletableFuture<ExpensePage> findPage(String userId, ExpenseQuery expenseQuery, int limit, String pageToken,
+                                                   ExpenseFields fields) {
+        // The sort field is always read: the page token is taken from it
+        ExpenseFields read = fields.withFieldsOf(expenseQuery);
+        Query query = projected(filteredQuery(userId, expenseQuery), read).limit(limit);
+        if (pageToken != null && !pageToken.isEmpty()) {
+            query = query.startAfter(decodePageToken(pageToken, expenseQuery));
+        }
+
+        return toCompletableFuture(query.get())
+                .thenApply(querySnapshot -> {
+                    List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+
+                    // A full page means there may be more; the last document read becomes the cursor
+                    String nextPageToken = null;
+                    if (documents.size() == limit) {
+                        nextPageToken = encodePageToken(documents.get(documents.size() - 1), expenseQuery);
+                    }
+                    return new ExpensePage(matching(toExpenses(documents, read), expenseQuery), nextPageToken);
+                });
+    }
+
+    @Override
+    public void streamByUser(String userId, int pageSize, ExpenseFields fields, Consumer<List<Expense>> pageConsumer) {
+        // startAfter a snapshot needs its date, so that is read too
+        ExpenseFields read = fields.withFieldsOf(DEFAULT_QUERY);
+        Query query = projected(filteredQuery(userId, DEFAULT_QUERY), read).limit(pageSize);
+
+        try {
+            DocumentSnapshot last = null;
+            List<QueryDocumentSnapshot> documents;
+            do {
+                Query page = last != null ? query.startAfter(last) : query;
+                documents = page.get().get().getDocuments();
+                pageConsumer.accept(toExpenses(documents, read));
+
+                if (!documents.isEmpty()) {
+                    last = documents.get(documents.size() - 1);
+                }
+            } while (documents.size() == pageSize);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to stream expenses", e);
+        }
+    }
+
+    /**
+     * Two keyset queries, one on {@code updatedAt} over the expenses and one on {@code deletedAt} over
+     * the tombstones, each ordered by (time, document ID) and resumed from its own cursor in the token.
+     * A cursor only moves to a query's read time once that query came back complete: a commit at or
+     * before the read time is visible to the read, so nothing can appear behind the cursor later.
+     * Tombstones expire after {@code expense.changes.tombstone-retention-days} (a TTL policy on
+     * {@code expireAt}), so an older deletion cursor gets a reset.
+     */
+    @Override
+    public CompletableFuture<ExpenseChanges> findChanges(String userId, String sinceToken, int limit) {
+        ChangeCursors since = sinceToken != null && !sinceToken.isEmpty() ? decodeChangeToken(sinceToken) : null;
+        Timestamp oldestKept = Timestamp.ofTimeSecondsAndNanos(
+                Timestamp.now().getSeconds() - Duration.ofDays(tombstoneRetentionDays).toSeconds(), 0);
+
+        if (since == null || since.removed().time().compareTo(oldestKept) < 0) {
+            return findResetPage(userId, null, null, limit);
+        }
+        if (since.resetPage() != null) {
+            return findResetPage(userId, since.expenses().time(), since.resetPage(), limit);
+        }
+
+        CompletableFuture<QuerySnapshot> updated =
+                toCompletableFuture(changesQuery(COLLECTION_NAME, "updatedAt", userId, since.expenses(), limit).get());
+        CompletableFuture<QuerySnapshot> deleted =
+                toCompletableFuture(changesQuery(TOMBSTONE_COLLECTION_NAME, "deletedAt", userId, since.removed(), limit).get());
+        return updated.thenCombine(deleted, (updates, deletions) -> {
+            List<QueryDocumentSnapshot> updatedDocuments = updates.getDocuments();
+            List<QueryDocumentSnapshot> deletedDocuments = deletions.getDocuments();
+            boolean moreUpdated = updatedDocuments.size() > limit;
+            boolean moreDeleted = deletedDocuments.size() > limit;
+            if (moreUpdated) {
+                updatedDocuments = updatedDocuments.subList(0, limit);
+            }
+            if (moreDeleted) {
+                deletedDocuments = deletedDocuments.subList(0, limit);
+            }
+
+            List<String> removed = new ArrayList<>(deletedDocuments.size());
+            for (QueryDocumentSnapshot tombstone : deletedDocuments) {
+                removed.add(tombstone.getId());
+            }
+            ChangeCursors next = new ChangeCursors(
+                    moreUpdated ? cursorAt(updatedDocuments, "updatedAt") : new Cursor(updates.getReadTime(), null),
+                    moreDeleted ? cursorAt(deletedDocuments, "deletedAt") : new Cursor(deletions.getReadTime(), null));
+            return new ExpenseChanges(toExpenses(updatedDocuments), removed, encodeChangeToken(next),
+                    moreUpdated || moreDeleted, false);
+        });
+    }
+
+    /**
+     * One page of a reset, keyed like {@link #findPage} on (date, document ID), newest first. The first
+     * page's read time is where the change queries resume once the last page is out, so writes made
+     * while the pages are fetched are still delivered; some may arrive twice. The last page of a reset
+     * that took several pages has more to read, since those writes cannot be ruled out without a query.
+     */
+    private CompletableFuture<ExpenseChanges> findResetPage(String userId, Timestamp startedAt, String pageToken,
+                                                            int limit) {
+        Query query = filteredQuery(userId, DEFAULT_QUERY).limit(limit + 1);
+        if (pageToken != null) {
+            query = query.startAfter(decodePageToken(pageToken, DEFAULT_QUERY));
+        }
+        return toCompletableFuture(query.get())
+                .thenApply(snapshot -> {
+                    List<QueryDocumentSnapshot> documents = snapshot.getDocuments();
+                    boolean morePages = documents.size() > limit;
+                    if (morePages) {
+                        documents = documents.subList(0, limit);
+                    }
+                    Cursor start = new Cursor(startedAt != null ? startedAt : snapshot.getReadTime(), null);
+                    String nextPage = morePages ? encodePageToken(documents.get(limit - 1), DEFAULT_QUERY) : null;
+                    return new ExpenseChanges(toExpenses(documents), List.of(),
+                            encodeChangeToken(new ChangeCursors(start, start, nextPage)),
+                            morePages || startedAt != null, startedAt == null);
+                });
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> findById(String id) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get())
+                .thenApply(document -> document.exists()
+                        ? Optional.ofNullable(ExpenseDocuments.toExpense(document))
+                        : Optional.empty());
+    }
+
+    /**
+     * The document and the owner's summary increment are committed in one batch.
+     */
+    @Override
+    public CompletableFuture<Expense> create(Expense expense) {
+        if (createBatcher != null) {
+            return createBatcher.submit(expense);
+        }
+        return commitCreates(List.of(expense)).thenApply(ignored -> expense);
+    }
+
+    /**
+     * Create the documents and their owners' summary increments in one batch, then give each
+     * expense its ID and version. Creates for the same owner share one summary write.
+     */
+    private CompletableFuture<Void> commitCreates(List<Expense> expenses) {
+        WriteBatch batch = firestore.batch();
+        List<DocumentReference> docRefs = new ArrayList<>(expenses.size());
+        Map<String, SummaryDelta> deltas = new HashMap<>();
+        for (Expense expense : expenses) {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
+            batch.create(docRef, ExpenseDocuments.toMap(expense));
+            docRefs.add(docRef);
+            deltas.computeIfAbsent(expense.getUserId(), key -> new SummaryDelta()).apply(expense, 1);
+        }
+        writeSummaryDeltas(batch, deltas);
+
+        return toCompletableFuture(batch.commit())
+                .thenAccept(writeResults -> {
+                    // Results come back in write order, so the document writes are first
+                    for (int i = 0; i < expenses.size(); i++) {
+                        Expense expense = expenses.get(i);
+                        expense.setId(docRefs.get(i).getId());
+                        expense.setVersion(ExpenseDocuments.toVersion(writeResults.get(i).getUpdateTime()));
+                    }
+                });
+    }
+
+    /**
+     * The document and the owner's summary change are committed in one batch guarded by an
+     * update-time precondition, so the write only lands on the version that was checked.
+     */
+    @Override
+    public CompletableFuture<Optional<Expense>> update(String id, Expense updated, String requesterId,
+                                                       Long expectedVersion, Expense known) {
+        return conditionalWrite(id, updated, requesterId, expectedVersion, known, "update", 1);
+    }
+
+    /**
+     * Committed like {@link #update}, with the deleted amount taken off the owner's summary.
+     */
+    @Override
+    public CompletableFuture<Optional<Expense>> delete(String id, String requesterId,
+                                                       Long expectedVersion, Expense known) {
+        return conditionalWrite(id, null, requesterId, expectedVersion, known, "delete", 1);
+    }
+
+    /**
+     * Reads the summary document in one round trip.
+     * Users whose summary is missing or in an older format get it rebuilt once from their expenses.
+     */
+    @Override
+    public CompletableFuture<ExpenseSummary> findSummary(String userId) {
+        return toCompletableFuture(summaryRef(userId).get())
+                .thenCompose(summary -> {
+                    if (summary.exists() && Boolean.TRUE.equals(summary.getBoolean("complete"))
+                            && Long.valueOf(SUMMARY_FORMAT).equals(summary.getLong("format"))) {
+                        return CompletableFuture.completedFuture(summary.getData());
+                    }
+                    return rebuildSummary(userId);
+                })
+                .thenApply(this::toSummary);
+    }
+
+    /**
+     * One snapshot listener on the user's expenses query. The first snapshot is the current state
+     * rather than a change and is skipped; after that only the changed documents are passed on.
+     */
+    @Override
+    public Watch watch(String userId, ChangeListener listener) {
+        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
+        AtomicBoolean initial = new AtomicBoolean(true);
+        ListenerRegistration registration = query.addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                logger.warn("Expense listener for user {} failed: {}", userId, error.getMessage());
+                listener.onError(error);
+                return;
+            }
+            if (snapshot == null || initial.getAndSet(false)) {
+                return;
+            }
+
+            List<ExpenseChange> changes = new ArrayList<>();
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot document = change.getDocument();
+                switch (change.getType()) {
+                    case ADDED -> addChange(changes, ExpenseChange.ADDED, document);
+                    case MODIFIED -> addChange(changes, ExpenseChange.MODIFIED, document);
+                    case REMOVED -> changes.add(new ExpenseChange(ExpenseChange.REMOVED, document.getId(), null));
+                }
+            }
+            if (!changes.isEmpty()) {
+                listener.onChanges(changes);
+            }
+        });
+        return registration::remove;
+    }
+
+    private static void addChange(List<ExpenseChange> changes, String type, DocumentSnapshot document) {
+        Expense expense = ExpenseDocuments.toExpense(document);
+        if (expense != null) {
+            changes.add(new ExpenseChange(type, expense.getId(), expense));
+        }
+    }
+
+    /**
+     * Writes go through a {@link BulkWriter}. Instead of incrementing the summary per row,
+     * the user's summary is marked for rebuild, so a partly finished import can never leave it wrong.
+     * It is marked again once the writes are flushed, whether or not they all succeeded: a summary read
+     * during the import rebuilds from the rows written so far and would otherwise miss the rest.
+     */
+    @Override
+    public BulkInsert bulkInsert(String userId) {
+        markSummaryIncomplete(userId, "start");
+
+        CollectionReference expenses = firestore.collection(COLLECTION_NAME);
+        BulkWriter bulkWriter = firestore.bulkWriter(BulkWriterOptions.builder()
+                .setInitialOpsPerSecond(importInitialOpsPerSecond)
+                .setMaxOpsPerSecond(importMaxOpsPerSecond)
+                .build());
+
+        return new BulkInsert() {
+            @Override
+            public CompletableFuture<Expense> add(Expense expense) {
+                DocumentReference docRef = expenses.document();
+                ApiFuture<WriteResult> write = bulkWriter.create(docRef, ExpenseDocuments.toMap(expense));
+                return toCompletableFuture(write).thenApply(writeResult -> {
+                    expense.setId(docRef.getId());
+                    return expense;
+                });
+            }
+
+            @Override
+            public void close() {
+                try {
+                    bulkWriter.close();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException("Failed to flush bulk insert", e);
+                } finally {
+                    markSummaryIncomplete(userId, "finish");
+                }
+            }
+        };
+    }
+
+    private void markSummaryIncomplete(String userId, String stage) {
+        try {
+            summaryRef(userId).set(Map.of("complete", false), SetOptions.merge()).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to " + stage + " bulk insert", e);
+        }
+    }
+
+    /**
+     * Update ({@code updated} non-null) or delete an expense at the version it was checked at.
+     * A current {@code known} copy makes this a single commit; otherwise the document is read first.
+     * If the precondition fails the caller's expected version is stale (a conflict), or, when the
+     * caller did not ask for one, our copy was, and the write is retried from a fresh read.
+     */
+    private CompletableFuture<Optional<Expense>> conditionalWrite(String id, Expense updated, String requesterId,
+                                                                  Long expectedVersion, Expense known,
+                                                                  String action, int attempt) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+
+        boolean knownIsUsable = known != null && known.getVersion() != null && id.equals(known.getId())
+                && (expectedVersion == null || expectedVersion.equals(known.getVersion()));
+        CompletableFuture<Optional<Expense>> current = knownIsUsable
+                ? CompletableFuture.completedFuture(Optional.of(known))
+                : toCompletableFuture(docRef.get()).thenApply(document -> document.exists()
+                        ? Optional.of(currentVersion(document))
+                        : Optional.empty());
+
+        return current.thenCompose(found -> {
+            if (found.isEmpty()) {
+                return CompletableFuture.completedFuture(Optional.<Expense>empty());
+            }
+            Expense previous = found.get();
+            if (expectedVersion != null && !expectedVersion.equals(previous.getVersion())) {
+                return CompletableFuture.<Optional<Expense>>failedFuture(new ExpenseConflictException(id));
+            }
+            if (!isOwnedBy(previous, requesterId, action)) {
+                return CompletableFuture.completedFuture(Optional.<Expense>empty());
+            }
+
+            Precondition precondition = Precondition.updatedAt(ExpenseDocuments.toUpdateTime(previous.getVersion()));
+            WriteBatch batch = firestore.batch();
+            if (updated != null) {
+                batch.update(docRef, ExpenseDocuments.toMap(updated), precondition);
+            } else {
+                batch.delete(docRef, precondition);
+                batch.set(firestore.collection(TOMBSTONE_COLLECTION_NAME).document(id), tombstone(previous));
+            }
+            applySummaryChange(batch, previous, updated);
+
+            return toCompletableFuture(batch.commit())
+                    .thenApply(writeResults -> {
+                        if (updated != null) {
+                            updated.setVersion(ExpenseDocuments.toVersion(writeResults.get(0).getUpdateTime()));
+                        }
+                        return Optional.of(previous);
+                    })
+                    .exceptionallyCompose(e -> {
+                        if (!isPreconditionFailure(e)) {
+                            return CompletableFuture.failedFuture(e);
+                        }
+                        if (expectedVersion != null || attempt >= MAX_WRITE_ATTEMPTS) {
+                            return CompletableFuture.failedFuture(new ExpenseConflictException(id));
+                        }
+                        logger.info("Expense {} changed since version {}, retrying {}", id, previous.getVersion(), action);
+                        return conditionalWrite(id, updated, requesterId, null, null, action, attempt + 1);
+                    });
+        });
+    }
+
+    /**
+     * The stored expense with its version. Documents that cannot be converted still yield their
+     * owner and version so they can be checked and deleted.
+     */
+    private Expense currentVersion(DocumentSnapshot document) {
+        Expense expense = ExpenseDocuments.toExpense(document);
+        if (expense == null) {
+            expense = new Expense();
+            expense.setId(document.getId());
+            expense.setUserId(document.getString("userId"));
+            expense.setVersion(ExpenseDocuments.toVersion(document.getUpdateTime()));
+        }
+        return expense;
+    }
+
+    /**
+     * Whether a write failed because its update-time precondition did not hold,
+     * including the document having been deleted.
+     */
+    private static boolean isPreconditionFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FirestoreException firestoreException && firestoreException.getStatus() != null) {
+                Status.Code code = firestoreException.getStatus().getCode();
+                if (code == Status.Code.FAILED_PRECONDITION || code == Status.Code.NOT_FOUND) {
+                    return true;
+                }
+            }
+            if (cause instanceof ApiException apiException) {
+                StatusCode.Code code = apiException.getStatusCode().getCode();
+                if (code == StatusCode.Code.FAILED_PRECONDITION || code == StatusCode.Code.NOT_FOUND) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Push a query down to Firestore: equality on user and category, and a range on the sort field.
+     * Firestore only allows a range on the field the results are first ordered by, so a range on the
+     * other field is left to {@link #matching}. Needs the indexes in firestore.indexes.json.
+     */
+    private Query filteredQuery(String userId, ExpenseQuery expenseQuery) {
+        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
+        if (expenseQuery.getCategory() != null) {
+            query = query.whereEqualTo("category", expenseQuery.getCategory());
+        }
+
+        String sortField;
+        if (expenseQuery.sortsByAmount()) {
+            sortField = "amount";
+            // The amount double is on every document, including ones written before amountMinor
+            if (expenseQuery.getMinAmount() != null) {
+                query = query.whereGreaterThanOrEqualTo("amount", expenseQuery.getMinAmount().doubleValue());
+            }
+            if (expenseQuery.getMaxAmount() != null) {
+                query = query.whereLessThanOrEqualTo("amount", expenseQuery.getMaxAmount().doubleValue());
+            }
+        } else {
+            sortField = "date";
+            if (expenseQuery.getFrom() != null) {
+                query = query.whereGreaterThanOrEqualTo("date", ExpenseDocuments.toTimestamp(expenseQuery.getFrom()));
+            }
+            if (expenseQuery.getTo() != null) {
+                query = query.whereLessThan("date", ExpenseDocuments.toTimestamp(expenseQuery.getTo().plusDays(1)));
+            }
+        }
+
+        Query.Direction direction = expenseQuery.isDescending() ? Query.Direction.DESCENDING : Query.Direction.ASCENDING;
+        return query.orderBy(sortField, direction).orderBy(FieldPath.documentId(), direction);
+    }
+
+    /**
+     * Have Firestore send only the document fields behind {@code fields}, instead of whole documents.
+     */
+    private static Query projected(Query query, ExpenseFields fields) {
+        return fields.isAll() ? query : query.select(ExpenseDocuments.select(fields));
+    }
+
+    /**
+     * Apply the filters Firestore could not.
+     */
+    private List<Expense> matching(List<Expense> expenses, ExpenseQuery expenseQuery) {
+        if (expenseQuery.sortsByAmount() ? expenseQuery.hasDateRange() : expenseQuery.hasAmountRange()) {
+            expenses.removeIf(expense -> !expenseQuery.matches(expense));
+        }
+        return expenses;
+    }
+
+    private List<Expense> toExpenses(List<QueryDocumentSnapshot> documents) {
+        return toExpenses(documents, ExpenseFields.ALL);
+    }
+
+    private List<Expense> toExpenses(List<QueryDocumentSnapshot> documents, ExpenseFields fields) {
+        List<Expense> expenseList = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            Expense expense = ExpenseDocuments.toExpense(document, fields);
+            if (expense != null) {
+                expenseList.add(expense);
+            }
+        }
+        return expenseList;
+    }
+
+    /**
+     * Security check: the expense must belong to the requester.
+     */
+    private boolean isOwnedBy(Expense expense, String requesterId, String action) {
+        if (requesterId != null && !requesterId.equals(expense.getUserId())) {
+            logger.warn("User {} attempted to {} expense {} owned by {}",
+                    requesterId, action, expense.getId(), expense.getUserId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Recompute a user's summary from all of their expenses and store it.
+     * Done in a transaction so writes that land meanwhile are not lost.
+     */
+    private CompletableFuture<Map<String, Object>> rebuildSummary(String userId) {
+        DocumentReference summaryRef = summaryRef(userId);
+        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
+
+        return toCompletableFuture(firestore.runTransaction(transaction -> {
+            // Read so that marking the summary incomplete meanwhile makes this transaction retry
+            transaction.get(summaryRef).get();
+            long totalMinor = 0;
+            long count = 0;
+            Map<String, Long> byCategoryMinor = new HashMap<>();
+            Map<String, Long> byMonthMinor = new HashMap<>();
+
+            for (DocumentSnapshot document : transaction.get(query).get().getDocuments()) {
+                Expense expense = ExpenseDocuments.toExpense(document);
+                if (expense == null) {
+                    continue;
+                }
+                long amount = Amounts.toMinor(expense.getAmount());
+                totalMinor += amount;
+                count++;
+                byCategoryMinor.merge(expense.getCategory(), amount, Long::sum);
+                if (expense.getDate() != null) {
+                    byMonthMinor.merge(SummaryDelta.monthKey(expense), amount, Long::sum);
+                }
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("totalMinor", totalMinor);
+            data.put("count", count);
+            data.put("byCategoryMinor", byCategoryMinor);
+            data.put("byMonthMinor", byMonthMinor);
+            data.put("format", SUMMARY_FORMAT);
+            data.put("complete", true);
+            transaction.set(summaryRef, data);
+            return data;
+        })).thenApply(data -> {
+            logger.info("Rebuilt expense summary for user {}", userId);
+            return data;
+        });
+    }
+
+    /**
+     * Add the summary increments for replacing {@code removed} with {@code added} to a write.
+     * Either side may be null; changes to the same owner are combined into one write.
+     */
+    private void applySummaryChange(UpdateBuilder<?> writes, Expense removed, Expense added) {
+        Map<String, SummaryDelta> deltas = new HashMap<>();
+        // A document that could not be converted has no amount to take off
+        if (removed != null && removed.getAmount() != null) {
+            deltas.computeIfAbsent(removed.getUserId(), key -> new SummaryDelta()).apply(removed, -1);
+        }
+        if (added != null) {
+            deltas.computeIfAbsent(added.getUserId(), key -> new SummaryDelta()).apply(added, 1);
+        }
+        writeSummaryDeltas(writes, deltas);
+    }
+
+    private void writeSummaryDeltas(UpdateBuilder<?> writes, Map<String, SummaryDelta> deltas) {
+        deltas.forEach((userId, delta) ->
+                writes.set(summaryRef(userId), delta.toFirestoreMap(), SetOptions.merge()));
+    }
+
+    private DocumentReference summaryRef(String userId) {
+        return firestore.collection(SUMMARY_COLLECTION_NAME)
+                .document(userId != null ? userId : ANONYMOUS_SUMMARY_ID);
+    }
+
+    /**
+     * Convert summary document data to the API representation.
+     */
+    private ExpenseSummary toSummary(Map<String, Object> data) {
+        Number totalMinor = (Number) data.get("totalMinor");
+        Number count = (Number) data.get("count");
+        return new ExpenseSummary(
+                Amounts.fromMinor(totalMinor != null ? totalMinor.longValue() : 0),
+                count != null ? count.longValue() : 0L,
+                toAmounts(data.get("byCategoryMinor")),
+                toAmounts(data.get("byMonthMinor")));
+    }
+
+    private Map<String, BigDecimal> toAmounts(Object field) {
+        Map<String, BigDecimal> amounts = new TreeMap<>();
+        if (field instanceof Map<?, ?> values) {
+            values.forEach((key, value) -> {
+                long minor = ((Number) value).longValue();
+                if (minor != 0) {
+                    amounts.put(key.toString(), Amounts.fromMinor(minor));
+                }
+            });
+        }
+        return amounts;
+    }
+
+    private Map<String, Object> tombstone(Expense deleted) {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("userId", deleted.getUserId());
+        tombstone.put("deletedAt", FieldValue.serverTimestamp());
+        tombstone.put("expireAt", Timestamp.ofTimeSecondsAndNanos(
+                Timestamp.now().getSeconds() + Duration.ofDays(tombstoneRetentionDays).toSeconds(), 0));
+        return tombstone;
+    }
+
+    /**
+     * A user's documents in {@code collection} stamped after the cursor, oldest first, one more than
+     * {@code limit} to tell whether more follow. Needs the indexes in firestore.indexes.json.
+     */
+    private Query changesQuery(String collection, String timeField, String userId, Cursor after, int limit) {
+        Query query = firestore.collection(collection)
+                .whereEqualTo("userId", userId)
+                .orderBy(timeField)
+                .orderBy(FieldPath.documentId())
+                .limit(limit + 1);
+        return after.id() != null
+                ? query.startAfter(after.time(), after.id())
+                : query.whereGreaterThan(timeField, after.time());
+    }
+
+    private static Cursor cursorAt(List<QueryDocumentSnapshot> documents, String timeField) {
+        QueryDocumentSnapshot last = documents.get(documents.size() - 1);
+        return new Cursor(last.getTimestamp(timeField), last.getId());
+    }
+
+    /**
+     * A position in a (time, document ID) ordering; without an ID it is after everything at that time.
+     */
+    private record Cursor(Timestamp time, String id) {
+    }
+
+    /**
+     * Where the expense and the tombstone queries of a change token resume. While a reset is paged,
+     * {@code resetPage} is the page token of the next reset page and both cursors are where it started.
+     */
+    private record ChangeCursors(Cursor expenses, Cursor removed, String resetPage) {
+
+        ChangeCursors(Cursor expenses, Cursor removed) {
+            this(expenses, removed, null);
+        }
+    }
+
+    private String encodeChangeToken(ChangeCursors cursors) {
+        if (cursors.resetPage() != null) {
+            // Page tokens are base64url, so they never contain ':'
+            String raw = "reset:" + cursors.expenses().time().getSeconds() + ":" + cursors.expenses().time().getNanos()
+                    + ":" + cursors.resetPage();
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        // Document IDs cannot contain '/', so it separates the two IDs
+        String raw = "changes:" + cursors.expenses().time().getSeconds() + ":" + cursors.expenses().time().getNanos()
+                + ":" + cursors.removed().time().getSeconds() + ":" + cursors.removed().time().getNanos()
+                + ":" + (cursors.expenses().id() != null ? cursors.expenses().id() : "")
+                + "/" + (cursors.removed().id() != null ? cursors.removed().id() : "");
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ChangeCursors decodeChangeToken(String changeToken) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(changeToken), StandardCharsets.UTF_8);
+            if (raw.startsWith("reset:")) {
+                String[] parts = raw.split(":", 4);
+                Cursor start = new Cursor(
+                        Timestamp.ofTimeSecondsAndNanos(Long.parseLong(parts[1]), Integer.parseInt(parts[2])), null);
+                return new ChangeCursors(start, start, parts[3]);
+            }
+            String[] parts = raw.split(":", 6);
+            if (parts.length != 6 || !parts[0].equals("changes")) {
+                throw new IllegalArgumentException("Not a change token");
+            }
+            String[] ids = parts[5].split("/", -1);
+            return new ChangeCursors(
+                    new Cursor(Timestamp.ofTimeSecondsAndNanos(Long.parseLong(parts[1]), Integer.parseInt(parts[2])),
+                            ids[0].isEmpty() ? null : ids[0]),
+                    new Cursor(Timestamp.ofTimeSecondsAndNanos(Long.parseLong(parts[3]), Integer.parseInt(parts[4])),
+                            ids[1].isEmpty() ? null : ids[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid change token", e);
+        }
+    }
+
+    /**
+     * Encode the sort key of the last document on a page as an opaque token.
+     */
+    private String encodePageToken(DocumentSnapshot lastDocument, ExpenseQuery expenseQuery) {
+        String raw;
+        if (expenseQuery.sortsByAmount()) {
+            raw = "amount:" + lastDocument.getDouble("amount") + ":" + lastDocument.getId();
+        } else {
+            Timestamp date = lastDocument.getTimestamp("date");
+            raw = "date:" + date.getSeconds() + ":" + date.getNanos() + ":" + lastDocument.getId();
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a page token back into the (sort value, document ID) values for startAfter.
+     */
+    private Object[] decodePageToken(String pageToken, ExpenseQuery expenseQuery) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+            if (expenseQuery.sortsByAmount()) {
+                String[] parts = raw.split(":", 3);
+                if (!parts[0].equals("amount")) {
+                    throw new IllegalArgumentException("Page token is for a different sort order");
+                }
+                return new Object[]{Double.parseDouble(parts[1]), parts[2]};
+            }
+            String[] parts = raw.split(":", 4);
+            if (!parts[0].equals("date")) {
+                throw new IllegalArgumentException("Page token is for a different sort order");
+            }
+            Timestamp date = Timestamp.ofTimeSecondsAndNanos(
+                    Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+            return new Object[]{date, parts[3]};
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+    }
+}
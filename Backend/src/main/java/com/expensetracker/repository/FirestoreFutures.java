@@ -0,0 +1,42 @@
+package com.expensetracker.repository;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapts Firestore {@link ApiFuture}s to {@link CompletableFuture}s without blocking a thread.
+ */
+final class FirestoreFutures {
+
+    private FirestoreFutures() {
+    }
+
+    /**
+     * Complete a CompletableFuture from the Firestore callback thread.
+     * Cancelling the returned future (e.g. on request timeout) cancels the Firestore call.
+     */
+    static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                apiFuture.cancel(true);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,152 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.dto.ExpenseQuery;
+import com.expensetracker.dto.ExpenseSummary;
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.ExpensePage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Delays every call to another repository by a simulated network round trip, so an in-memory store
+ * can stand in for Firestore in load tests (see the {@code loadtest} profile).
+ * <p>
+ * Each call waits {@code baseMillis} plus a uniformly random share of {@code jitterMillis} before it
+ * reaches the delegate. Asynchronous calls wait on a timer without holding a thread, as a
+ * Firestore RPC would; {@link #streamByUser} blocks the caller for each page like the real paged read.
+ */
+public class LatencyInjectingExpenseRepository implements ExpenseRepository {
+
+    private final ExpenseRepository delegate;
+    private final long readMillis;
+    private final long writeMillis;
+    private final long jitterMillis;
+
+    public LatencyInjectingExpenseRepository(ExpenseRepository delegate, long readMillis, long writeMillis,
+                                             long jitterMillis) {
+        this.delegate = delegate;
+        this.readMillis = readMillis;
+        this.writeMillis = writeMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUser(String userId) {
+        return read(() -> delegate.findByUser(userId));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> find(String userId, ExpenseQuery query, ExpenseFields fields) {
+        return read(() -> delegate.find(userId, query, fields));
+    }
+
+    @Override
+    public CompletableFuture<ExpensePage> findPage(String userId, ExpenseQuery query, int limit, String pageToken,
+                                                   ExpenseFields fields) {
+        return read(() -> delegate.findPage(userId, query, limit, pageToken, fields));
+    }
+
+    @Override
+    public void streamByUser(String userId, int pageSize, ExpenseFields fields, Consumer<List<Expense>> pageConsumer) {
+        delegate.streamByUser(userId, pageSize, fields, page -> {
+            sleep(delay(readMillis));
+            pageConsumer.accept(page);
+        });
+    }
+
+    @Override
+    public CompletableFuture<ExpenseChanges> findChanges(String userId, String sinceToken, int limit) {
+        return read(() -> delegate.findChanges(userId, sinceToken, limit));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> findById(String id) {
+        return read(() -> delegate.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<Expense> create(Expense expense) {
+        return write(() -> delegate.create(expense));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> update(String id, Expense updated, String requesterId,
+                                                       Long expectedVersion, Expense known) {
+        return write(() -> delegate.update(id, updated, requesterId, expectedVersion, known));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Expense>> delete(String id, String requesterId,
+                                                       Long expectedVersion, Expense known) {
+        return write(() -> delegate.delete(id, requesterId, expectedVersion, known));
+    }
+
+    @Override
+    public CompletableFuture<ExpenseSummary> findSummary(String userId) {
+        return read(() -> delegate.findSummary(userId));
+    }
+
+    @Override
+    public BulkInsert bulkInsert(String userId) {
+        BulkInsert insert = delegate.bulkInsert(userId);
+        return new BulkInsert() {
+            @Override
+            public CompletableFuture<Expense> add(Expense expense) {
+                return write(() -> insert.add(expense));
+            }
+
+            @Override
+            public void close() {
+                insert.close();
+            }
+        };
+    }
+
+    /**
+     * Registering the listener is not delayed; change delivery already arrives asynchronously.
+     */
+    @Override
+    public Watch watch(String userId, ChangeListener listener) {
+        return delegate.watch(userId, listener);
+    }
+
+    private <T> CompletableFuture<T> read(Supplier<CompletableFuture<T>> call) {
+        return after(delay(readMillis), call);
+    }
+
+    private <T> CompletableFuture<T> write(Supplier<CompletableFuture<T>> call) {
+        return after(delay(writeMillis), call);
+    }
+
+    private static <T> CompletableFuture<T> after(long millis, Supplier<CompletableFuture<T>> call) {
+        if (millis <= 0) {
+            return call.get();
+        }
+        Executor timer = CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS);
+        return CompletableFuture.runAsync(() -> { }, timer).thenCompose(ignored -> call.get());
+    }
+
+    private long delay(long baseMillis) {
+        return jitterMillis > 0 ? baseMillis + ThreadLocalRandom.current().nextLong(jitterMillis + 1) : baseMillis;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
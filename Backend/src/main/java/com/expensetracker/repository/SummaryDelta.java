@@ -0,0 +1,52 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+import com.google.cloud.firestore.FieldValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the change one write makes to a user's summary document.
+ * Written with merge so every field is applied as an atomic increment of minor units.
+ */
+class SummaryDelta {
+
+    private long totalMinor;
+    private long count;
+    private final Map<String, Long> byCategoryMinor = new HashMap<>();
+    private final Map<String, Long> byMonthMinor = new HashMap<>();
+
+    /**
+     * Add (sign = 1) or remove (sign = -1) one expense.
+     */
+    void apply(Expense expense, int sign) {
+        long amount = sign * Amounts.toMinor(expense.getAmount());
+        totalMinor += amount;
+        count += sign;
+        byCategoryMinor.merge(expense.getCategory(), amount, Long::sum);
+        if (expense.getDate() != null) {
+            byMonthMinor.merge(monthKey(expense), amount, Long::sum);
+        }
+    }
+
+    Map<String, Object> toFirestoreMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("totalMinor", FieldValue.increment(totalMinor));
+        map.put("count", FieldValue.increment(count));
+        map.put("byCategoryMinor", increments(byCategoryMinor));
+        map.put("byMonthMinor", increments(byMonthMinor));
+        return map;
+    }
+
+    static String monthKey(Expense expense) {
+        return expense.getDate().toString().substring(0, 7);
+    }
+
+    private static Map<String, Object> increments(Map<String, Long> values) {
+        Map<String, Object> map = new HashMap<>();
+        values.forEach((key, value) -> map.put(key, FieldValue.increment(value)));
+        return map;
+    }
+}
@@ -0,0 +1,88 @@
+package com.expensetracker.service;
+
+/**
+ * A concurrency limit that adapts to the latency of the calls it admits (a gradient limit).
+ * <p>
+ * Two moving averages of call latency are kept: a slow one that stands for the no-load latency and a
+ * fast one for the current latency. While the current latency stays within {@code tolerance} times
+ * the no-load latency the limit grows by a fraction of its square root per sample; as latency rises
+ * above that the limit shrinks in proportion. A failed call cuts the limit by 10%. The limit only
+ * grows while at least half of it is in use, so a quiet period does not leave it inflated.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RTT_WEIGHT = 1.0 / 600;
+    private static final double SHORT_RTT_WEIGHT = 1.0 / 10;
+    private static final double FAILURE_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private double limit;
+    private double longRttNanos;
+    private double shortRttNanos;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Admit a call if fewer than the limit are in flight. Every admitted call must be followed by
+     * {@link #release}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Record the end of an admitted call and adjust the limit.
+     */
+    public synchronized void release(long rttNanos, boolean failed) {
+        int inFlightAtSample = inFlight;
+        inFlight--;
+
+        if (failed) {
+            limit = Math.max(minLimit, limit * FAILURE_BACKOFF);
+            return;
+        }
+
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+            return;
+        }
+        longRttNanos += (rttNanos - longRttNanos) * LONG_RTT_WEIGHT;
+        shortRttNanos += (rttNanos - shortRttNanos) * SHORT_RTT_WEIGHT;
+
+        // After an overload the slow average lags far behind; let it catch up with recovered latency
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        if (inFlightAtSample < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
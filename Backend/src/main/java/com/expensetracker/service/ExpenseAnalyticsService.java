@@ -0,0 +1,44 @@
+package com.expensetracker.service;
+
+import com.expensetracker.dto.ExpenseAnalytics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Answers analytics queries from per-user {@link ExpenseColumns}.
+ * Columns are built from the user's expense list on first use and then kept current from
+ * {@link ExpenseChangedEvent}s, so repeated queries never go back to the repository; they are dropped
+ * once unused for {@code expense.analytics.ttl-seconds}.
+ */
+@Service
+public class ExpenseAnalyticsService {
+
+    private final UserExpenseViews<ExpenseColumns> columnsByUser;
+
+    public ExpenseAnalyticsService(
+            ExpenseService expenseService,
+            @Value("${expense.analytics.max-users:10000}") long maxUsers,
+            @Value("${expense.analytics.ttl-seconds:300}") long ttlSeconds) {
+        this.columnsByUser = new UserExpenseViews<>(maxUsers, Duration.ofSeconds(ttlSeconds),
+                expenseService::getAllExpensesAsync, ExpenseColumns::new, ExpenseColumns::put, ExpenseColumns::remove);
+    }
+
+    /**
+     * Aggregate a user's expenses dated {@code from} to {@code to} (inclusive, either may be null)
+     * without blocking, including the {@code top} largest expenses.
+     */
+    public CompletableFuture<ExpenseAnalytics> getAnalyticsAsync(String userId, LocalDate from, LocalDate to,
+                                                                 int top) {
+        return columnsByUser.get(userId).thenApply(columns -> columns.aggregate(from, to, top));
+    }
+
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        columnsByUser.onExpenseChanged(event);
+    }
+}
@@ -0,0 +1,136 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process read-through cache for expense lists (keyed by userId) and single expenses (keyed by ID).
+ * Bounded by the total number of cached expenses and by a time-to-live, so entries written
+ * by another instance are picked up once they expire.
+ * <p>
+ * Each user's lists have a generation that {@link #invalidateUser} moves on. A list is only cached if
+ * the generation it was loaded at is still current, so a read that overlapped a write cannot put back
+ * the list from before that write.
+ */
+@Component
+public class ExpenseCache implements MeterBinder {
+
+    private final Cache<String, List<Expense>> expensesByUser;
+    private final Cache<String, Expense> expensesById;
+    private final Cache<String, Long> generations;
+    private final AtomicLong generationSequence = new AtomicLong();
+
+    public ExpenseCache(
+            @Value("${expense.cache.max-expenses:50000}") long maxExpenses,
+            @Value("${expense.cache.ttl-seconds:300}") long ttlSeconds) {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.expensesByUser = Caffeine.newBuilder()
+                .maximumWeight(maxExpenses)
+                .weigher((String userId, List<Expense> expenses) -> expenses.size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.expensesById = Caffeine.newBuilder()
+                .maximumSize(maxExpenses)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.generations = Caffeine.newBuilder()
+                .maximumSize(maxExpenses)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public List<Expense> getUserExpenses(String userId) {
+        return userId != null ? expensesByUser.getIfPresent(userId) : null;
+    }
+
+    /**
+     * The user's current generation; take it before loading a list for {@link #putUserExpenses}.
+     * Generations come from one sequence, so one that expired is never handed out again.
+     */
+    public long userGeneration(String userId) {
+        return userId != null ? generations.get(userId, key -> generationSequence.incrementAndGet()) : 0;
+    }
+
+    /**
+     * Cache a list loaded at {@code generation}, unless the user has been invalidated since.
+     */
+    public void putUserExpenses(String userId, long generation, List<Expense> expenses) {
+        if (userId == null) {
+            return;
+        }
+        List<Expense> cached = Collections.unmodifiableList(expenses);
+        expensesByUser.put(userId, cached);
+        // invalidateUser moves the generation before it invalidates: either it is seen moved here,
+        // or that invalidation comes after this put and removes it
+        Long current = generations.getIfPresent(userId);
+        if (current == null || current != generation) {
+            expensesByUser.asMap().remove(userId, cached);
+        }
+    }
+
+    public Expense getExpense(String id) {
+        return expensesById.getIfPresent(id);
+    }
+
+    public void putExpense(Expense expense) {
+        expensesById.put(expense.getId(), expense);
+    }
+
+    public void evictExpense(String id) {
+        expensesById.invalidate(id);
+    }
+
+    public void invalidateUser(String userId) {
+        if (userId != null) {
+            generations.put(userId, generationSequence.incrementAndGet());
+            expensesByUser.invalidate(userId);
+        }
+    }
+
+    /**
+     * Publish the same statistics as {@code cache.*} meters; Spring Boot binds every MeterBinder bean.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, expensesByUser, "expensesByUser");
+        CaffeineCacheMetrics.monitor(registry, expensesById, "expensesById");
+    }
+
+    /**
+     * Hit, miss and eviction counts plus current size for each cache.
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("expensesByUser", describe(expensesByUser));
+        stats.put("expensesById", describe(expensesById));
+        return stats;
+    }
+
+    private static Map<String, Object> describe(Cache<String, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("size", cache.estimatedSize());
+        description.put("hitCount", stats.hitCount());
+        description.put("missCount", stats.missCount());
+        description.put("hitRate", stats.hitRate());
+        description.put("evictionCount", stats.evictionCount());
+        description.put("evictionWeight", stats.evictionWeight());
+        return description;
+    }
+}
@@ -0,0 +1,37 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+
+/**
+ * Published by {@link ExpenseService} after an expense write has been stored.
+ * A create has no previous expense, a delete no current one. When both are null,
+ * many of the user's expenses changed at once (a bulk import) and derived state should be rebuilt.
+ */
+public class ExpenseChangedEvent {
+
+    private final String userId;
+    private final Expense previous;
+    private final Expense current;
+
+    public ExpenseChangedEvent(String userId, Expense previous, Expense current) {
+        this.userId = userId;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Expense getPrevious() {
+        return previous;
+    }
+
+    public Expense getCurrent() {
+        return current;
+    }
+
+    public boolean isBulk() {
+        return previous == null && current == null;
+    }
+}
@@ -0,0 +1,201 @@
+package com.expensetracker.service;
+
+import com.expensetracker.dto.ExpenseAnalytics;
+import com.expensetracker.model.Amounts;
+import com.expensetracker.model.Expense;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One user's expenses laid out column by column for analytics: epoch day, month and dictionary-encoded
+ * category as {@code int}s, amount as {@code long} minor units. Rows are unordered; a delete moves the last
+ * row into the gap. Aggregations are single passes over the primitive arrays.
+ * <p>
+ * Expenses without a date or amount are left out. All methods are synchronized.
+ */
+public final class ExpenseColumns {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private int[] months = new int[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+
+    /** Months are numbered year * 12 + (month - 1); the range only ever grows. */
+    private int minMonth = Integer.MAX_VALUE;
+    private int maxMonth = Integer.MIN_VALUE;
+
+    public ExpenseColumns(Collection<Expense> expenses) {
+        for (Expense expense : expenses) {
+            put(expense);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Add an expense, replacing the row with the same ID if there is one.
+     */
+    public synchronized void put(Expense expense) {
+        remove(expense.getId());
+        if (expense.getDate() == null || expense.getAmount() == null) {
+            return;
+        }
+        if (size == ids.length) {
+            grow();
+        }
+
+        LocalDate date = expense.getDate();
+        int month = date.getYear() * 12 + date.getMonthValue() - 1;
+        int row = size++;
+        ids[row] = expense.getId();
+        titles[row] = expense.getTitle();
+        epochDays[row] = (int) date.toEpochDay();
+        months[row] = month;
+        amounts[row] = Amounts.toMinor(expense.getAmount());
+        categories[row] = categoryCode(expense.getCategory());
+        rowById.put(expense.getId(), row);
+        minMonth = Math.min(minMonth, month);
+        maxMonth = Math.max(maxMonth, month);
+    }
+
+    public synchronized void remove(String id) {
+        Integer row = rowById.remove(id);
+        if (row == null) {
+            return;
+        }
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            titles[row] = titles[last];
+            epochDays[row] = epochDays[last];
+            months[row] = months[last];
+            amounts[row] = amounts[last];
+            categories[row] = categories[last];
+            rowById.put(ids[row], row);
+        }
+        ids[last] = null;
+        titles[last] = null;
+    }
+
+    /**
+     * Aggregate the expenses dated {@code from} to {@code to} (inclusive, either may be null)
+     * and pick the {@code top} largest.
+     */
+    public synchronized ExpenseAnalytics aggregate(LocalDate from, LocalDate to, int top) {
+        int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+        int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+        int monthSlots = size > 0 ? maxMonth - minMonth + 1 : 0;
+
+        long totalMinor = 0;
+        int count = 0;
+        long[] monthTotals = new long[monthSlots];
+        int[] monthCounts = new int[monthSlots];
+        long[] categoryTotals = new long[categoryNames.size()];
+        long[] dayOfWeekTotals = new long[7];
+        // Rows of the largest amounts so far, largest first
+        int[] topRows = new int[Math.min(top, size)];
+        int topCount = 0;
+
+        for (int row = 0; row < size; row++) {
+            int day = epochDays[row];
+            if (day < fromDay || day > toDay) {
+                continue;
+            }
+            long amount = amounts[row];
+            totalMinor += amount;
+            count++;
+            int slot = months[row] - minMonth;
+            monthTotals[slot] += amount;
+            monthCounts[slot]++;
+            categoryTotals[categories[row]] += amount;
+            // 1970-01-01 was a Thursday, index 3 counting from Monday
+            dayOfWeekTotals[Math.floorMod(day + 3, 7)] += amount;
+
+            if (topRows.length > 0 && (topCount < topRows.length || amount > amounts[topRows[topCount - 1]])) {
+                int position = Math.min(topCount, topRows.length - 1);
+                while (position > 0 && amounts[topRows[position - 1]] < amount) {
+                    topRows[position] = topRows[position - 1];
+                    position--;
+                }
+                topRows[position] = row;
+                topCount = Math.min(topCount + 1, topRows.length);
+            }
+        }
+
+        List<ExpenseAnalytics.MonthTotal> monthly = new ArrayList<>();
+        for (int slot = 0; slot < monthSlots; slot++) {
+            if (monthCounts[slot] > 0) {
+                int month = minMonth + slot;
+                monthly.add(new ExpenseAnalytics.MonthTotal(
+                        YearMonth.of(month / 12, month % 12 + 1).toString(),
+                        Amounts.fromMinor(monthTotals[slot]), monthCounts[slot]));
+            }
+        }
+
+        // Largest category first
+        Integer[] order = new Integer[categoryTotals.length];
+        Arrays.setAll(order, code -> code);
+        Arrays.sort(order, (a, b) -> Long.compare(categoryTotals[b], categoryTotals[a]));
+        Map<String, BigDecimal> byCategory = new LinkedHashMap<>();
+        for (int code : order) {
+            if (categoryTotals[code] != 0) {
+                byCategory.put(categoryNames.get(code), Amounts.fromMinor(categoryTotals[code]));
+            }
+        }
+
+        Map<String, BigDecimal> byDayOfWeek = new LinkedHashMap<>();
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            byDayOfWeek.put(dayOfWeek.name(), Amounts.fromMinor(dayOfWeekTotals[dayOfWeek.ordinal()]));
+        }
+
+        List<Expense> largest = new ArrayList<>(topCount);
+        for (int i = 0; i < topCount; i++) {
+            int row = topRows[i];
+            largest.add(new Expense(ids[row], titles[row], Amounts.fromMinor(amounts[row]),
+                    categoryNames.get(categories[row]), LocalDate.ofEpochDay(epochDays[row])));
+        }
+
+        return new ExpenseAnalytics(Amounts.fromMinor(totalMinor), count, monthly, byCategory, byDayOfWeek, largest);
+    }
+
+    private int categoryCode(String category) {
+        Integer code = categoryCodes.get(category);
+        if (code == null) {
+            code = categoryNames.size();
+            categoryNames.add(category);
+            categoryCodes.put(category, code);
+        }
+        return code;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        months = Arrays.copyOf(months, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+    }
+}
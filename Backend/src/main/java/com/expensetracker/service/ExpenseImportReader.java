@@ -0,0 +1,210 @@
+package com.expensetracker.service;
+
+import com.expensetracker.dto.ExpenseRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads bulk import rows one at a time from a JSON array or a CSV upload,
+ * so large files are never held in memory as a whole.
+ * Rows that cannot be parsed are returned with an error instead of stopping the import.
+ */
+public abstract class ExpenseImportReader implements Iterator<ExpenseImportReader.Row> {
+
+    /**
+     * One input row: either a parsed request or the reason it could not be parsed.
+     * Row numbers start at 1 and do not count a CSV header line.
+     */
+    public record Row(int number, ExpenseRequest request, String error) {
+    }
+
+    private Row next;
+    private boolean finished;
+    protected int rowNumber;
+
+    public static ExpenseImportReader forJson(InputStream input, ObjectMapper objectMapper) throws IOException {
+        return new JsonReader(objectMapper.readerFor(ExpenseRequest.class).readValues(input));
+    }
+
+    public static ExpenseImportReader forCsv(InputStream input) {
+        return new CsvReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Read the next row, or return null at end of input.
+     */
+    protected abstract Row readRow() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read import data", e);
+            }
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Row row = next;
+        next = null;
+        return row;
+    }
+
+    /**
+     * Streams the elements of a top-level JSON array.
+     */
+    private static final class JsonReader extends ExpenseImportReader {
+
+        private final MappingIterator<ExpenseRequest> values;
+        private boolean broken;
+
+        JsonReader(MappingIterator<ExpenseRequest> values) {
+            this.values = values;
+        }
+
+        @Override
+        protected Row readRow() throws IOException {
+            if (broken) {
+                return null;
+            }
+            int number = rowNumber + 1;
+            try {
+                if (!values.hasNextValue()) {
+                    return null;
+                }
+                rowNumber = number;
+                return new Row(number, values.nextValue(), null);
+            } catch (JsonMappingException e) {
+                // A field of the wrong type: the iterator skips the rest of this element
+                rowNumber = number;
+                return new Row(number, null, "Invalid value: " + e.getOriginalMessage());
+            } catch (JsonProcessingException e) {
+                // Malformed JSON: nothing after this point can be trusted
+                broken = true;
+                rowNumber = number;
+                return new Row(number, null, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads title, amount, category and date columns, one expense per line.
+     * An optional header line may list the columns in any order.
+     * Fields may be double-quoted; quoted fields cannot span lines.
+     */
+    private static final class CsvReader extends ExpenseImportReader {
+
+        private static final List<String> COLUMNS = List.of("title", "amount", "category", "date");
+
+        private final BufferedReader reader;
+        private int[] columnIndexes = {0, 1, 2, 3};
+        private boolean headerChecked;
+
+        CsvReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        protected Row readRow() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = parseLine(line);
+                if (!headerChecked) {
+                    headerChecked = true;
+                    if (applyHeader(fields)) {
+                        continue;
+                    }
+                }
+                rowNumber++;
+                return toRow(fields);
+            }
+            return null;
+        }
+
+        private boolean applyHeader(List<String> fields) {
+            List<String> names = fields.stream()
+                    .map(field -> field.trim().toLowerCase(Locale.ROOT))
+                    .toList();
+            if (!names.containsAll(COLUMNS)) {
+                return false;
+            }
+            columnIndexes = COLUMNS.stream().mapToInt(names::indexOf).toArray();
+            return true;
+        }
+
+        private Row toRow(List<String> fields) {
+            if (fields.size() <= Arrays.stream(columnIndexes).max().orElse(0)) {
+                return new Row(rowNumber, null, "Expected columns: " + String.join(",", COLUMNS));
+            }
+            try {
+                ExpenseRequest request = new ExpenseRequest(
+                        fields.get(columnIndexes[0]),
+                        new BigDecimal(fields.get(columnIndexes[1]).trim()),
+                        fields.get(columnIndexes[2]),
+                        LocalDate.parse(fields.get(columnIndexes[3]).trim()));
+                return new Row(rowNumber, request, null);
+            } catch (NumberFormatException e) {
+                return new Row(rowNumber, null, "Invalid amount: " + fields.get(columnIndexes[1]));
+            } catch (DateTimeParseException e) {
+                return new Row(rowNumber, null, "Invalid date (expected yyyy-MM-dd): " + fields.get(columnIndexes[3]));
+            }
+        }
+
+        private static List<String> parseLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
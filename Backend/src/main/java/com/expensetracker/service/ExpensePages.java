@@ -0,0 +1,72 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.ExpensePage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A user's expenses read a page at a time for a response that is written as they arrive.
+ * The first page has already been read; {@link #forEach} hands it on and then every later one.
+ * Each later page is requested before the one ahead of it is handed on, so reading it overlaps
+ * writing that one, and the caller only waits for a page that has not arrived yet.
+ */
+public final class ExpensePages {
+
+    private final ExpensePage first;
+    private final Function<String, CompletableFuture<ExpensePage>> next;
+    private final int collectUpTo;
+    private final Consumer<List<Expense>> collected;
+
+    /**
+     * @param next        reads the page for a token without blocking
+     * @param collectUpTo when every page has been handed on and they hold this many expenses or fewer,
+     *                    they are passed to {@code collected} as one list; 0 to never collect
+     */
+    ExpensePages(ExpensePage first, Function<String, CompletableFuture<ExpensePage>> next,
+                 int collectUpTo, Consumer<List<Expense>> collected) {
+        this.first = first;
+        this.next = next;
+        this.collectUpTo = collectUpTo;
+        this.collected = collected;
+    }
+
+    /**
+     * Expenses that are already in memory, handed on as a single page.
+     */
+    static ExpensePages of(List<Expense> expenses) {
+        return new ExpensePages(new ExpensePage(expenses, null), token -> {
+            throw new IllegalStateException("No page follows");
+        }, 0, null);
+    }
+
+    /**
+     * Hand every page to {@code pageConsumer} in order. A later page that fails to read is thrown
+     * from here as a {@link java.util.concurrent.CompletionException}, after the pages before it.
+     */
+    public void forEach(Consumer<List<Expense>> pageConsumer) {
+        List<Expense> all = collectUpTo > 0 ? new ArrayList<>() : null;
+        ExpensePage page = first;
+        while (true) {
+            String token = page.getNextPageToken();
+            CompletableFuture<ExpensePage> following = token != null ? next.apply(token) : null;
+            pageConsumer.accept(page.getExpenses());
+            if (all != null && all.size() + page.getExpenses().size() <= collectUpTo) {
+                all.addAll(page.getExpenses());
+            } else {
+                all = null;
+            }
+            if (following == null) {
+                break;
+            }
+            page = following.join();
+        }
+        if (all != null) {
+            collected.accept(all);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One user's expenses indexed for search-as-you-type over title and category.
+ * <p>
+ * Text is lower-cased and split into words on anything that is not a letter or digit. Each word is
+ * indexed under its marked two-character prefix and under every trigram of the word with a start
+ * marker, so a query term of one or two characters matches words starting with it and a longer term
+ * matches anywhere inside a word. Every query word must match; trigram candidates are checked against
+ * the text before they count.
+ * <p>
+ * Expenses get increasing document numbers, so posting lists stay sorted by appending. Removing an
+ * expense only marks its document dead; once dead documents outnumber live ones the index is rebuilt.
+ * Ranking keys are packed into {@code long}s so the best hits are kept in a primitive heap.
+ * All methods are synchronized.
+ */
+public final class ExpenseSearchIndex {
+
+    private static final char WORD_START = '^';
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_COMPACTION = 1024;
+    /** Shifts epoch days into 24 unsigned bits of the ranking key; undated expenses rank oldest. */
+    private static final int DAY_OFFSET = 1 << 22;
+
+    private int documents;
+    private int dead;
+    private Expense[] expenses = new Expense[INITIAL_CAPACITY];
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private String[] categories = new String[INITIAL_CAPACITY];
+    private int[] days = new int[INITIAL_CAPACITY];
+    private final Map<String, Integer> documentById = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /**
+     * At most {@code limit} matches, best first, and how many expenses matched in total.
+     */
+    public record Result(List<Expense> expenses, int total) {
+    }
+
+    public ExpenseSearchIndex(Collection<Expense> expenses) {
+        for (Expense expense : expenses) {
+            put(expense);
+        }
+    }
+
+    public synchronized int size() {
+        return documentById.size();
+    }
+
+    /**
+     * Add an expense, replacing the one with the same ID if there is one.
+     */
+    public synchronized void put(Expense expense) {
+        if (expense.getId() == null) {
+            return;
+        }
+        remove(expense.getId());
+
+        if (documents == expenses.length) {
+            int capacity = documents * 2;
+            expenses = Arrays.copyOf(expenses, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            days = Arrays.copyOf(days, capacity);
+        }
+        int document = documents++;
+        expenses[document] = expense;
+        titles[document] = normalize(expense.getTitle());
+        categories[document] = normalize(expense.getCategory());
+        days[document] = expense.getDate() != null ? (int) expense.getDate().toEpochDay() + DAY_OFFSET : 0;
+        documentById.put(expense.getId(), document);
+        addGrams(titles[document], document);
+        addGrams(categories[document], document);
+    }
+
+    public synchronized void remove(String id) {
+        Integer document = id != null ? documentById.remove(id) : null;
+        if (document == null) {
+            return;
+        }
+        expenses[document] = null;
+        dead++;
+        if (dead > MIN_COMPACTION && dead > documentById.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Expenses whose title or category contains every word of {@code query}, ranked by how well the
+     * words match: a whole word beats a word prefix beats the middle of a word, and the title counts
+     * for more than the category. Equal scores are ordered newest first.
+     */
+    public synchronized Result search(String query, int limit) {
+        List<String> terms = new ArrayList<>();
+        List<Postings> lists = new ArrayList<>();
+        for (String term : normalize(query).split(" ")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            terms.add(term);
+            for (String gram : queryGrams(term)) {
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    return new Result(List.of(), 0);
+                }
+                lists.add(list);
+            }
+        }
+        if (lists.isEmpty()) {
+            return new Result(List.of(), 0);
+        }
+
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int[] candidates = lists.get(0).documents;
+        int count = lists.get(0).size;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            Postings other = lists.get(i);
+            int[] matched = new int[count];
+            count = intersect(candidates, count, other.documents, other.size, matched);
+            candidates = matched;
+        }
+
+        String[] words = terms.toArray(new String[0]);
+        TopHits best = new TopHits(limit);
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            int document = candidates[i];
+            if (expenses[document] == null) {
+                continue;
+            }
+            int score = score(words, titles[document], categories[document]);
+            if (score > 0) {
+                total++;
+                best.offer(((long) score << 56) | ((long) days[document] << 32) | document);
+            }
+        }
+
+        long[] ranked = best.sorted();
+        List<Expense> hits = new ArrayList<>(ranked.length);
+        for (long key : ranked) {
+            hits.add(expenses[(int) key]);
+        }
+        return new Result(hits, total);
+    }
+
+    private static int score(String[] terms, String title, String category) {
+        int score = 0;
+        for (String term : terms) {
+            int match = Math.max(2 * match(title, term), match(category, term));
+            if (match == 0) {
+                return 0;
+            }
+            score += match;
+        }
+        return Math.min(score, Byte.MAX_VALUE);
+    }
+
+    /**
+     * 3 if {@code term} is a whole word of {@code text}, 2 if it starts one, 1 if it is inside one.
+     * Terms shorter than a trigram only match at the start of a word.
+     */
+    private static int match(String text, String term) {
+        int best = 0;
+        for (int at = text.indexOf(term); at >= 0 && best < 3; at = text.indexOf(term, at + 1)) {
+            boolean starts = at == 0 || text.charAt(at - 1) == ' ';
+            boolean ends = at + term.length() == text.length() || text.charAt(at + term.length()) == ' ';
+            if (starts) {
+                best = Math.max(best, ends ? 3 : 2);
+            } else if (term.length() >= 3) {
+                best = Math.max(best, 1);
+            }
+        }
+        return best;
+    }
+
+    private void addGrams(String text, int document) {
+        for (String word : text.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String marked = WORD_START + word;
+            add(marked.substring(0, 2), document);
+            for (int i = 0; i + 3 <= marked.length(); i++) {
+                add(marked.substring(i, i + 3), document);
+            }
+        }
+    }
+
+    private void add(String gram, int document) {
+        postings.computeIfAbsent(gram, key -> new Postings()).append(document);
+    }
+
+    /**
+     * Grams every match of {@code term} must have: the marked prefix for short terms, otherwise the
+     * term's own trigrams.
+     */
+    private static List<String> queryGrams(String term) {
+        if (term.length() < 3) {
+            return List.of(WORD_START + term);
+        }
+        List<String> grams = new ArrayList<>(term.length() - 2);
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            grams.add(term.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static int intersect(int[] a, int aSize, int[] b, int bSize, int[] out) {
+        int n = 0;
+        for (int i = 0, j = 0; i < aSize && j < bSize; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private void compact() {
+        List<Expense> live = new ArrayList<>(documentById.size());
+        for (int document = 0; document < documents; document++) {
+            if (expenses[document] != null) {
+                live.add(expenses[document]);
+            }
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, live.size());
+        documents = 0;
+        dead = 0;
+        expenses = new Expense[capacity];
+        titles = new String[capacity];
+        categories = new String[capacity];
+        days = new int[capacity];
+        documentById.clear();
+        postings.clear();
+        for (Expense expense : live) {
+            put(expense);
+        }
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Ascending document numbers; a document is appended at most once per gram.
+     */
+    private static final class Postings {
+        private int[] documents = new int[4];
+        private int size;
+
+        void append(int document) {
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+    }
+
+    /**
+     * The {@code limit} largest ranking keys (score, day, document from high to low bits), kept in a
+     * binary min-heap so a candidate that cannot make the cut costs one comparison.
+     */
+    private static final class TopHits {
+        private final long[] heap;
+        private int size;
+
+        TopHits(int limit) {
+            heap = new long[Math.max(limit, 0)];
+        }
+
+        void offer(long key) {
+            if (size < heap.length) {
+                int i = size++;
+                while (i > 0 && heap[(i - 1) / 2] > key) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = key;
+            } else if (size > 0 && key > heap[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && heap[child + 1] < heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] >= key) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = key;
+            }
+        }
+
+        /** Best first. */
+        long[] sorted() {
+            long[] keys = Arrays.copyOf(heap, size);
+            Arrays.sort(keys);
+            for (int i = 0, j = keys.length - 1; i < j; i++, j--) {
+                long swap = keys[i];
+                keys[i] = keys[j];
+                keys[j] = swap;
+            }
+            return keys;
+        }
+    }
+}
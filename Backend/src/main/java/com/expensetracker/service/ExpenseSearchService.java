@@ -0,0 +1,40 @@
+package com.expensetracker.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Answers title and category searches from per-user {@link ExpenseSearchIndex}es.
+ * An index is built from the user's expense list on the first search, kept current from
+ * {@link ExpenseChangedEvent}s and dropped once unused for {@code expense.search.ttl-seconds}.
+ */
+@Service
+public class ExpenseSearchService {
+
+    private final UserExpenseViews<ExpenseSearchIndex> indexByUser;
+
+    public ExpenseSearchService(
+            ExpenseService expenseService,
+            @Value("${expense.search.max-users:10000}") long maxUsers,
+            @Value("${expense.search.ttl-seconds:600}") long ttlSeconds) {
+        this.indexByUser = new UserExpenseViews<>(maxUsers, Duration.ofSeconds(ttlSeconds),
+                expenseService::getAllExpensesAsync, ExpenseSearchIndex::new,
+                ExpenseSearchIndex::put, ExpenseSearchIndex::remove);
+    }
+
+    /**
+     * The user's best {@code limit} matches for {@code query} without blocking.
+     */
+    public CompletableFuture<ExpenseSearchIndex.Result> searchAsync(String userId, String query, int limit) {
+        return indexByUser.get(userId).thenApply(index -> index.search(query, limit));
+    }
+
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        indexByUser.onExpenseChanged(event);
+    }
+}
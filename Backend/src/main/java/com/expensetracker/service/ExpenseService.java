@@ -1,226 +1,509 @@
 package com.expensetracker.service;
 
+import com.expensetracker.dto.BulkImportResponse;
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseFields;
+import com.expensetracker.dto.ExpenseQuery;
+import com.expensetracker.dto.ExpenseRequest;
+import com.expensetracker.dto.ExpenseSummary;
+import com.expensetracker.dto.ImportRowResult;
 import com.expensetracker.model.Expense;
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
+import com.expensetracker.model.ExpensePage;
+import com.expensetracker.repository.ExpenseConflictException;
+import com.expensetracker.repository.ExpenseRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
- * Service for managing expenses with Firebase Firestore.
+ * Service for managing expenses on top of the configured {@link ExpenseRepository}.
+ * Every operation has a non-blocking {@code ...Async} form; the blocking forms wait on it
+ * for callers that need a plain value.
  */
 @Service
 public class ExpenseService {
 
     private static final Logger logger = LoggerFactory.getLogger(ExpenseService.class);
-    private static final String COLLECTION_NAME = "expenses";
 
     @Autowired
-    private Firestore firestore;
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ExpenseCache expenseCache;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RepositoryMetrics metrics;
+
+    @Autowired
+    private StorageLimiter limiter;
+
+    @Value("${expense.export.page-size:500}")
+    private int exportPageSize;
+
+    @Value("${expense.list.cache-max-expenses:5000}")
+    private int listCacheMaxExpenses;
+
+    @Value("${expense.import.max-rows:100000}")
+    private int importMaxRows;
+
+    @Value("${expense.import.max-in-flight:2000}")
+    private int importMaxInFlight;
 
     /**
      * Get all expenses for a user.
      */
     public List<Expense> getAllExpenses(String userId) {
-        try {
-            CollectionReference expenses = firestore.collection(COLLECTION_NAME);
-            Query query = expenses.whereEqualTo("userId", userId)
-                    .orderBy("date", Query.Direction.DESCENDING);
+        return await(getAllExpensesAsync(userId));
+    }
 
-            ApiFuture<QuerySnapshot> querySnapshot = query.get();
-            List<Expense> expenseList = new ArrayList<>();
+    /**
+     * Get all expenses for a user without blocking.
+     * Served from the cache when the user's list has not changed since it was last loaded.
+     */
+    public CompletableFuture<List<Expense>> getAllExpensesAsync(String userId) {
+        List<Expense> cached = expenseCache.getUserExpenses(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
 
-            for (DocumentSnapshot document : querySnapshot.get().getDocuments()) {
-                Expense expense = documentToExpense(document);
-                if (expense != null) {
-                    expenseList.add(expense);
-                }
-            }
+        long generation = expenseCache.userGeneration(userId);
+        return metrics.timed("findByUser", () -> limiter.read(() -> expenseRepository.findByUser(userId)),
+                        List::size, null)
+                .thenApply(expenseList -> {
+                    logger.info("Retrieved {} expenses for user {}", expenseList.size(), userId);
+                    expenseCache.putUserExpenses(userId, generation, expenseList);
+                    return expenseList;
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    logger.error("Error getting expenses", e);
+                    throw new RuntimeException("Failed to get expenses", e);
+                });
+    }
+
+    /**
+     * Get a user's expenses that match a query.
+     */
+    public List<Expense> findExpenses(String userId, ExpenseQuery query) {
+        return await(findExpensesAsync(userId, query, ExpenseFields.ALL));
+    }
 
-            logger.info("Retrieved {} expenses for user {}", expenseList.size(), userId);
-            return expenseList;
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error getting expenses", e);
-            throw new RuntimeException("Failed to get expenses", e);
+    /**
+     * Get a user's expenses that match a query without blocking; see {@link ExpenseFields} for
+     * {@code fields}. When the user's full list is cached it is filtered and sorted in memory instead.
+     */
+    public CompletableFuture<List<Expense>> findExpensesAsync(String userId, ExpenseQuery query,
+                                                             ExpenseFields fields) {
+        List<Expense> cached = expenseCache.getUserExpenses(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(query.apply(cached));
         }
+
+        return metrics.timed("find", () -> limiter.read(() -> expenseRepository.find(userId, query, fields)),
+                        List::size, null)
+                .thenApply(expenseList -> {
+                    logger.info("Retrieved {} matching expenses for user {}", expenseList.size(), userId);
+                    return expenseList;
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    logger.error("Error querying expenses", e);
+                    throw new RuntimeException("Failed to get expenses", e);
+                });
     }
 
     /**
-     * Get expense by ID.
+     * Get one page of a user's expenses that match a query.
      */
-    public Optional<Expense> getExpenseById(String id) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-            ApiFuture<DocumentSnapshot> future = docRef.get();
-            DocumentSnapshot document = future.get();
+    public ExpensePage getExpensesPage(String userId, ExpenseQuery query, int limit, String pageToken) {
+        return await(getExpensesPageAsync(userId, query, limit, pageToken, ExpenseFields.ALL));
+    }
 
-            if (document.exists()) {
-                return Optional.ofNullable(documentToExpense(document));
-            }
-            return Optional.empty();
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error getting expense by ID", e);
-            return Optional.empty();
+    /**
+     * Get one page of a user's expenses without blocking; see {@link ExpenseFields} for {@code fields}.
+     */
+    public CompletableFuture<ExpensePage> getExpensesPageAsync(String userId, ExpenseQuery query,
+                                                               int limit, String pageToken, ExpenseFields fields) {
+        return metrics.timed("findPage",
+                        () -> limiter.read(() -> expenseRepository.findPage(userId, query, limit, pageToken, fields)),
+                        page -> page.getExpenses().size(), null)
+                .thenApply(page -> {
+                    logger.info("Retrieved page of {} expenses for user {}", page.getExpenses().size(), userId);
+                    return page;
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    logger.error("Error getting expense page", e);
+                    throw new RuntimeException("Failed to get expenses", e);
+                });
+    }
+
+    /**
+     * Get a user's expenses that match a query a page at a time, for a response written as they are read;
+     * see {@link ExpenseFields} for {@code fields}. The future completes once the first page is read, so a
+     * failure to read at all is still an error response; each later page is read behind the same limiter.
+     * When the user's full list is cached it is filtered and sorted in memory and handed on as one page.
+     * A full list read with every field is cached once written, if it has at most
+     * {@code expense.list.cache-max-expenses} expenses.
+     */
+    public CompletableFuture<ExpensePages> getExpensePagesAsync(String userId, ExpenseQuery query,
+                                                                ExpenseFields fields) {
+        List<Expense> cached = expenseCache.getUserExpenses(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(ExpensePages.of(query.apply(cached)));
         }
+
+        long generation = expenseCache.userGeneration(userId);
+        int collectUpTo = query.isDefault() && fields.isAll() ? listCacheMaxExpenses : 0;
+        return getExpensesPageAsync(userId, query, exportPageSize, null, fields)
+                .thenApply(first -> new ExpensePages(first,
+                        token -> getExpensesPageAsync(userId, query, exportPageSize, token, fields),
+                        collectUpTo, all -> expenseCache.putUserExpenses(userId, generation, all)));
+    }
+
+    /**
+     * Get what changed in a user's expenses since a change token without blocking.
+     * A malformed token fails at once with {@link IllegalArgumentException}.
+     */
+    public CompletableFuture<ExpenseChanges> getChangesAsync(String userId, String sinceToken, int limit) {
+        return metrics.timed("findChanges",
+                        () -> limiter.read(() -> expenseRepository.findChanges(userId, sinceToken, limit)),
+                        changes -> changes.getExpenses().size() + changes.getRemoved().size(), null)
+                .thenApply(changes -> {
+                    logger.info("Retrieved {} changed and {} removed expenses for user {}{}",
+                            changes.getExpenses().size(), changes.getRemoved().size(), userId,
+                            changes.isReset() ? " (reset)" : "");
+                    return changes;
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    logger.error("Error getting expense changes", e);
+                    throw new RuntimeException("Failed to get expense changes", e);
+                });
+    }
+
+    /**
+     * Walk all of a user's expenses, newest first, handing each page to {@code pageConsumer}
+     * as soon as it arrives. Only one page is held in memory at a time.
+     */
+    public void streamExpenses(String userId, Consumer<List<Expense>> pageConsumer) {
+        streamExpenses(userId, ExpenseFields.ALL, pageConsumer);
+    }
+
+    /**
+     * Walk all of a user's expenses as {@link #streamExpenses(String, Consumer)} does, reading only
+     * {@code fields} where storage can.
+     */
+    public void streamExpenses(String userId, ExpenseFields fields, Consumer<List<Expense>> pageConsumer) {
+        AtomicInteger total = new AtomicInteger();
+        metrics.timedBlocking("streamByUser", () -> {
+            expenseRepository.streamByUser(userId, exportPageSize, fields, page -> {
+                total.addAndGet(page.size());
+                pageConsumer.accept(page);
+            });
+            return total.get();
+        });
+        logger.info("Streamed {} expenses for user {}", total.get(), userId);
+    }
+
+    /**
+     * Get one of the user's expenses by ID.
+     */
+    public Optional<Expense> getExpenseById(String id, String userId) {
+        return await(getExpenseByIdAsync(id, userId));
+    }
+
+    /**
+     * Get one of the user's expenses by ID without blocking.
+     * Another user's expense is reported as not found, whether it was cached or read.
+     */
+    public CompletableFuture<Optional<Expense>> getExpenseByIdAsync(String id, String userId) {
+        Expense cached = expenseCache.getExpense(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(ownedBy(cached, userId));
+        }
+
+        return metrics.timed("findById", () -> limiter.read(() -> expenseRepository.findById(id)),
+                        expense -> expense.isPresent() ? 1 : 0, null)
+                .thenApply(expense -> {
+                    expense.ifPresent(expenseCache::putExpense);
+                    return expense.flatMap(found -> ownedBy(found, userId));
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    logger.error("Error getting expense by ID", e);
+                    return Optional.empty();
+                });
     }
 
     /**
      * Create a new expense.
      */
     public Expense createExpense(Expense expense, String userId) {
-        try {
-            sanitizeExpense(expense);
-            expense.setUserId(userId);
-
-            CollectionReference expenses = firestore.collection(COLLECTION_NAME);
-            ApiFuture<DocumentReference> future = expenses.add(expenseToMap(expense));
-            DocumentReference docRef = future.get();
-
-            expense.setId(docRef.getId());
-            logger.info("Created expense with ID: {}", expense.getId());
-            return expense;
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error creating expense", e);
-            throw new RuntimeException("Failed to create expense", e);
-        }
+        return await(createExpenseAsync(expense, userId));
     }
 
     /**
-     * Update an existing expense.
+     * Create a new expense without blocking.
      */
-    public Optional<Expense> updateExpense(String id, Expense updatedExpense, String userId) {
-        try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-            ApiFuture<DocumentSnapshot> future = docRef.get();
-            DocumentSnapshot document = future.get();
+    public CompletableFuture<Expense> createExpenseAsync(Expense expense, String userId) {
+        sanitizeExpense(expense);
+        expense.setUserId(userId);
 
-            if (!document.exists()) {
-                return Optional.empty();
-            }
+        return metrics.timed("create", () -> limiter.write(() -> expenseRepository.create(expense)),
+                        null, RepositoryMetrics::one)
+                .thenApply(created -> {
+                    expenseCache.invalidateUser(userId);
+                    eventPublisher.publishEvent(new ExpenseChangedEvent(userId, null, created));
+                    logger.info("Created expense with ID: {}", created.getId());
+                    return created;
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    logger.error("Error creating expense", e);
+                    throw new RuntimeException("Failed to create expense", e);
+                });
+    }
 
-            // Security check
-            String docUserId = document.getString("userId");
-            if (userId != null && !userId.equals(docUserId)) {
-                logger.warn("User {} attempted to update expense {} owned by {}", 
-                    userId, id, docUserId);
-                return Optional.empty();
-            }
+    /**
+     * Update an existing expense.
+     */
+    public Optional<Expense> updateExpense(String id, Expense updatedExpense, String userId) {
+        return await(updateExpenseAsync(id, updatedExpense, userId, null));
+    }
 
-            sanitizeExpense(updatedExpense);
-            updatedExpense.setId(id);
-            updatedExpense.setUserId(userId);
+    /**
+     * Update an existing expense without blocking.
+     * With {@code expectedVersion} the update fails with {@link ExpenseConflictException} if the
+     * expense has changed since that version. A cached copy lets the write skip reading it first.
+     */
+    public CompletableFuture<Optional<Expense>> updateExpenseAsync(String id, Expense updatedExpense, String userId,
+                                                                   Long expectedVersion) {
+        sanitizeExpense(updatedExpense);
+        updatedExpense.setId(id);
+        updatedExpense.setUserId(userId);
 
-            ApiFuture<WriteResult> updateFuture = docRef.update(expenseToMap(updatedExpense));
-            updateFuture.get();
+        Expense known = expenseCache.getExpense(id);
+        return metrics.timed("update",
+                        () -> limiter.write(
+                                () -> expenseRepository.update(id, updatedExpense, userId, expectedVersion, known)),
+                        null, previous -> previous.isPresent() ? 1 : 0)
+                .thenApply(previous -> {
+                    if (previous.isEmpty()) {
+                        return Optional.<Expense>empty();
+                    }
 
-            logger.info("Updated expense with ID: {}", id);
-            return Optional.of(updatedExpense);
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error updating expense", e);
-            return Optional.empty();
-        }
+                    expenseCache.invalidateUser(previous.get().getUserId());
+                    expenseCache.invalidateUser(userId);
+                    expenseCache.putExpense(updatedExpense);
+                    eventPublisher.publishEvent(new ExpenseChangedEvent(userId, previous.get(), updatedExpense));
+                    logger.info("Updated expense with ID: {}", id);
+                    return Optional.of(updatedExpense);
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof ExpenseConflictException conflict) {
+                        expenseCache.evictExpense(id);
+                        logger.warn("Rejected update of expense {}: {}", id, conflict.getMessage());
+                        throw conflict;
+                    }
+                    logger.error("Error updating expense", e);
+                    return Optional.empty();
+                });
     }
 
     /**
      * Delete an expense.
      */
     public boolean deleteExpense(String id, String userId) {
+        return await(deleteExpenseAsync(id, userId, null));
+    }
+
+    /**
+     * Delete an expense without blocking.
+     * {@code expectedVersion} works as for {@link #updateExpenseAsync}.
+     */
+    public CompletableFuture<Boolean> deleteExpenseAsync(String id, String userId, Long expectedVersion) {
+        Expense known = expenseCache.getExpense(id);
+        return metrics.timed("delete",
+                        () -> limiter.write(() -> expenseRepository.delete(id, userId, expectedVersion, known)),
+                        null, previous -> previous.isPresent() ? 1 : 0)
+                .thenApply(previous -> {
+                    if (previous.isEmpty()) {
+                        return false;
+                    }
+
+                    expenseCache.invalidateUser(previous.get().getUserId());
+                    expenseCache.evictExpense(id);
+                    eventPublisher.publishEvent(new ExpenseChangedEvent(userId, previous.get(), null));
+                    logger.info("Deleted expense with ID: {}", id);
+                    return true;
+                })
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof ExpenseConflictException conflict) {
+                        expenseCache.evictExpense(id);
+                        logger.warn("Rejected delete of expense {}: {}", id, conflict.getMessage());
+                        throw conflict;
+                    }
+                    logger.error("Error deleting expense", e);
+                    return false;
+                });
+    }
+
+    /**
+     * Import many expenses for a user in one call.
+     * Each row is validated against the {@link ExpenseRequest} constraints, then handed to the
+     * repository's bulk insert with at most {@code expense.import.max-in-flight} writes outstanding.
+     * Rows succeed or fail individually.
+     */
+    public BulkImportResponse importExpenses(Iterator<ExpenseImportReader.Row> rows, String userId) {
+        List<ImportRowResult> results = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(importMaxInFlight);
+        AtomicInteger created = new AtomicInteger();
+
+        ExpenseRepository.BulkInsert bulkInsert = expenseRepository.bulkInsert(userId);
         try {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-            ApiFuture<DocumentSnapshot> future = docRef.get();
-            DocumentSnapshot document = future.get();
+            try {
+                while (rows.hasNext()) {
+                    ExpenseImportReader.Row row = rows.next();
+                    if (row.number() > importMaxRows) {
+                        results.add(new ImportRowResult(row.number(), ImportRowResult.INVALID, null,
+                                Map.of("row", "Import is limited to " + importMaxRows + " rows")));
+                        break;
+                    }
+                    if (row.error() != null) {
+                        results.add(new ImportRowResult(row.number(), ImportRowResult.INVALID, null,
+                                Map.of("row", row.error())));
+                        continue;
+                    }
 
-            if (!document.exists()) {
-                return false;
-            }
+                    Map<String, String> errors = validate(row.request());
+                    if (!errors.isEmpty()) {
+                        results.add(new ImportRowResult(row.number(), ImportRowResult.INVALID, null, errors));
+                        continue;
+                    }
 
-            // Security check
-            String docUserId = document.getString("userId");
-            if (userId != null && !userId.equals(docUserId)) {
-                logger.warn("User {} attempted to delete expense {} owned by {}", 
-                    userId, id, docUserId);
-                return false;
-            }
+                    Expense expense = toExpense(row.request());
+                    sanitizeExpense(expense);
+                    expense.setUserId(userId);
+                    ImportRowResult result = new ImportRowResult(row.number(), null, null, null);
+                    results.add(result);
 
-            ApiFuture<WriteResult> deleteFuture = docRef.delete();
-            deleteFuture.get();
+                    inFlight.acquire();
+                    metrics.timed("bulkInsert", () -> bulkInsert.add(expense),
+                            null, RepositoryMetrics::one).whenComplete((stored, error) -> {
+                        if (error == null) {
+                            result.setStatus(ImportRowResult.CREATED);
+                            result.setId(stored.getId());
+                            created.incrementAndGet();
+                        } else {
+                            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                            result.setStatus(ImportRowResult.FAILED);
+                            result.setErrors(Map.of("write", String.valueOf(cause.getMessage())));
+                        }
+                        inFlight.release();
+                    });
+                }
+            } finally {
+                // Flush whatever is still buffered
+                bulkInsert.close();
+            }
 
-            logger.info("Deleted expense with ID: {}", id);
-            return true;
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error deleting expense", e);
-            return false;
+            // Wait for every row callback to run
+            inFlight.acquire(importMaxInFlight);
+        } catch (InterruptedException e) {
+            logger.error("Error importing expenses", e);
+            throw new RuntimeException("Failed to import expenses", e);
+        } finally {
+            expenseCache.invalidateUser(userId);
+            eventPublisher.publishEvent(new ExpenseChangedEvent(userId, null, null));
         }
+
+        int createdCount = created.get();
+        logger.info("Imported {} of {} expenses for user {}", createdCount, results.size(), userId);
+        return new BulkImportResponse(createdCount, results.size() - createdCount, results);
     }
 
     /**
      * Get total amount of all expenses for a user.
      */
     public BigDecimal getTotalAmount(String userId) {
-        List<Expense> expenses = getAllExpenses(userId);
-        return expenses.stream()
-                .map(Expense::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return await(getTotalAmountAsync(userId));
     }
 
     /**
-     * Convert Firestore document to Expense object.
+     * Get total amount of all expenses for a user without blocking.
      */
-    private Expense documentToExpense(DocumentSnapshot document) {
-        try {
-            Expense expense = new Expense();
-            expense.setId(document.getId());
-            expense.setTitle(document.getString("title"));
-            expense.setAmount(new BigDecimal(document.getDouble("amount").toString()));
-            expense.setCategory(document.getString("category"));
-            
-            // Convert Firestore Timestamp to LocalDate
-            com.google.cloud.Timestamp timestamp = document.getTimestamp("date");
-            if (timestamp != null) {
-                Date date = timestamp.toDate();
-                expense.setDate(date.toInstant()
-                        .atZone(ZoneId.systemDefault())
-                        .toLocalDate());
-            }
-            
-            expense.setUserId(document.getString("userId"));
-            return expense;
-        } catch (Exception e) {
-            logger.error("Error converting document to expense", e);
-            return null;
-        }
+    public CompletableFuture<BigDecimal> getTotalAmountAsync(String userId) {
+        return getSummaryAsync(userId).thenApply(ExpenseSummary::getTotalAmount);
+    }
+
+    /**
+     * Get a user's running totals.
+     */
+    public ExpenseSummary getSummary(String userId) {
+        return await(getSummaryAsync(userId));
+    }
+
+    /**
+     * Get a user's running totals without blocking.
+     */
+    public CompletableFuture<ExpenseSummary> getSummaryAsync(String userId) {
+        return metrics.timed("findSummary", () -> limiter.read(() -> expenseRepository.findSummary(userId)),
+                        RepositoryMetrics::one, null)
+                .exceptionally(e -> {
+                    rethrowIfShed(e);
+                    logger.error("Error getting expense summary", e);
+                    throw new RuntimeException("Failed to get expense summary", e);
+                });
     }
 
     /**
-     * Convert Expense object to Firestore map.
+     * Run Bean Validation on an import row, keyed by field name like the single-expense endpoints.
      */
-    private java.util.Map<String, Object> expenseToMap(Expense expense) {
-        java.util.Map<String, Object> map = new java.util.HashMap<>();
-        map.put("title", expense.getTitle());
-        map.put("amount", expense.getAmount().doubleValue());
-        map.put("category", expense.getCategory());
-        
-        // Convert LocalDate to Firestore Timestamp
-        if (expense.getDate() != null) {
-            Date date = Date.from(expense.getDate()
-                    .atStartOfDay(ZoneId.systemDefault())
-                    .toInstant());
-            map.put("date", com.google.cloud.Timestamp.of(date));
+    private Map<String, String> validate(ExpenseRequest request) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (ConstraintViolation<ExpenseRequest> violation : validator.validate(request)) {
+            errors.putIfAbsent(violation.getPropertyPath().toString(), violation.getMessage());
         }
-        
-        map.put("userId", expense.getUserId());
-        return map;
+        return errors;
+    }
+
+    private Expense toExpense(ExpenseRequest request) {
+        Expense expense = new Expense();
+        expense.setTitle(request.getTitle());
+        expense.setAmount(request.getAmount());
+        expense.setCategory(request.getCategory());
+        expense.setDate(request.getDate());
+        return expense;
     }
 
     /**
@@ -234,4 +517,40 @@ public class ExpenseService {
             expense.setCategory(expense.getCategory().trim());
         }
     }
+
+    /**
+     * The expense if it belongs to the user, logging any attempt to read someone else's.
+     */
+    private static Optional<Expense> ownedBy(Expense expense, String userId) {
+        if (!Objects.equals(userId, expense.getUserId())) {
+            logger.warn("User {} attempted to read expense {} owned by {}", userId, expense.getId(), expense.getUserId());
+            return Optional.empty();
+        }
+        return Optional.of(expense);
+    }
+
+    /**
+     * Let calls refused by the {@link StorageLimiter} through unwrapped, so they are answered with 503
+     * rather than turned into a 404 or 500.
+     */
+    private static void rethrowIfShed(Throwable e) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        if (cause instanceof StorageOverloadedException shed) {
+            throw shed;
+        }
+    }
+
+    /**
+     * Block for a result, rethrowing runtime failures unwrapped.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,309 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.ExpenseChange;
+import com.expensetracker.repository.ExpenseRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live change streams (Server-Sent Events) for users' expense lists.
+ * <p>
+ * Each user with at least one open stream has exactly one {@link ExpenseRepository#watch}, shared by
+ * all of their connections and closed when the last one goes. Changes are queued per connection and
+ * written on a sender thread, so a slow client never holds up the watch or other clients. A client
+ * that falls more than {@code expense.stream.max-queued-events} behind has its queue dropped and gets
+ * a {@code resync} event telling it to refetch its list instead.
+ * <p>
+ * Senders are a fixed pool of {@code expense.stream.sender-threads} with at most
+ * {@code expense.stream.max-pending-sends} connections waiting for one. A connection that finds the
+ * backlog full is treated like one that fell behind: its queue is dropped, and the next event or
+ * heartbeat tries again, starting with {@code resync}.
+ */
+@Service
+public class ExpenseStreamService implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseStreamService.class);
+    private static final long RECONNECT_MILLIS = 3000;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Value("${expense.stream.timeout-seconds:1800}")
+    private long timeoutSeconds;
+
+    @Value("${expense.stream.max-queued-events:256}")
+    private int maxQueuedEvents;
+
+    private final Map<String, UserStream> streams = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor sender;
+    private final ScheduledExecutorService heartbeat =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("expense-stream-heartbeat-"));
+
+    public ExpenseStreamService(@Value("${expense.stream.heartbeat-seconds:15}") long heartbeatSeconds,
+                                @Value("${expense.stream.sender-threads:16}") int senderThreads,
+                                @Value("${expense.stream.max-pending-sends:10000}") int maxPendingSends) {
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxPendingSends), daemonThreads("expense-stream-"));
+        sender.allowCoreThreadTimeOut(true);
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Open a stream of the user's expense changes. The first event is {@code ready}; after that each
+     * {@code changes} event carries a JSON array of {@link ExpenseChange}s.
+     */
+    public SseEmitter subscribe(String userId) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(timeoutSeconds));
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        streams.compute(userId, (key, stream) -> {
+            UserStream joined = stream != null ? stream : new UserStream(key);
+            joined.subscribers.add(subscriber);
+            return joined;
+        });
+        subscriber.offer(Event.READY);
+        return emitter;
+    }
+
+    /**
+     * Number of users with an open stream, which is also the number of active watches.
+     */
+    public int activeUsers() {
+        return streams.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("expense.stream.users", streams, Map::size)
+                .description("Users with an open change stream, one repository watch each")
+                .register(registry);
+        Gauge.builder("expense.stream.connections", this,
+                        service -> service.streams.values().stream().mapToInt(stream -> stream.subscribers.size()).sum())
+                .description("Open change stream connections")
+                .register(registry);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.close();
+        streams.computeIfPresent(subscriber.userId, (key, stream) -> {
+            stream.subscribers.remove(subscriber);
+            if (!stream.subscribers.isEmpty()) {
+                return stream;
+            }
+            stream.watch.close();
+            logger.debug("Closed expense watch for user {}", key);
+            return null;
+        });
+    }
+
+    private void sendHeartbeats() {
+        for (UserStream stream : streams.values()) {
+            for (Subscriber subscriber : stream.subscribers) {
+                subscriber.heartbeat();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        heartbeat.shutdownNow();
+        for (UserStream stream : streams.values()) {
+            stream.subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        }
+        sender.shutdown();
+    }
+
+    /**
+     * The shared watch and open connections of one user.
+     */
+    private final class UserStream implements ExpenseRepository.ChangeListener {
+
+        private final String userId;
+        private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        private final ExpenseRepository.Watch watch;
+
+        private UserStream(String userId) {
+            this.userId = userId;
+            this.watch = expenseRepository.watch(userId, this);
+            logger.debug("Opened expense watch for user {}", userId);
+        }
+
+        @Override
+        public void onChanges(List<ExpenseChange> changes) {
+            Event event = new Event("changes", changes);
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(event);
+            }
+        }
+
+        /**
+         * End every connection; clients reconnect and so open a fresh watch.
+         */
+        @Override
+        public void onError(Throwable error) {
+            streams.remove(userId, this);
+            watch.close();
+            subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        }
+    }
+
+    /**
+     * A named event with a JSON payload, or a keepalive comment when the name is null.
+     * Queued instead of an {@link SseEmitter.SseEventBuilder}, which cannot be sent twice.
+     */
+    private record Event(String name, Object data) {
+
+        private static final Event READY = new Event("ready", Map.of());
+        private static final Event HEARTBEAT = new Event(null, null);
+        private static final Event RESYNC = new Event("resync", Map.of());
+
+        SseEmitter.SseEventBuilder toSse() {
+            if (name == null) {
+                return SseEmitter.event().comment("keepalive");
+            }
+            SseEmitter.SseEventBuilder event = SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON);
+            return this == READY ? event.reconnectTime(RECONNECT_MILLIS) : event;
+        }
+    }
+
+    /**
+     * One open connection and the events waiting to be written to it.
+     */
+    private final class Subscriber {
+
+        private final String userId;
+        private final SseEmitter emitter;
+        private final Queue<Event> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean resync;
+        private boolean closed;
+
+        private Subscriber(String userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() >= maxQueuedEvents) {
+                    queue.clear();
+                    resync = true;
+                } else {
+                    queue.add(event);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            startDraining();
+        }
+
+        /**
+         * Keep idle connections open through proxies; skipped while anything else is pending.
+         */
+        void heartbeat() {
+            synchronized (this) {
+                if (closed || draining) {
+                    return;
+                }
+                queue.add(Event.HEARTBEAT);
+                draining = true;
+            }
+            startDraining();
+        }
+
+        /**
+         * Hand the queue to a sender thread. If none can take it, drop what is queued and owe the
+         * client a resync, sent once a later event or heartbeat gets a thread.
+         */
+        private void startDraining() {
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    queue.clear();
+                    resync = true;
+                    draining = false;
+                }
+                logger.debug("Expense stream senders busy, user {} will be resynced", userId);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        private void drain() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    if (closed) {
+                        draining = false;
+                        return;
+                    }
+                    if (resync) {
+                        resync = false;
+                        event = Event.RESYNC;
+                    } else {
+                        event = queue.poll();
+                        if (event == null) {
+                            draining = false;
+                            return;
+                        }
+                    }
+                }
+                try {
+                    emitter.send(event.toSse());
+                } catch (IOException | IllegalStateException e) {
+                    logger.debug("Dropping expense stream of user {}: {}", userId, e.getMessage());
+                    unsubscribe(this);
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.expensetracker.service;
+
+import com.expensetracker.repository.ExpenseConflictException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Micrometer instrumentation of {@link com.expensetracker.repository.ExpenseRepository} calls.
+ * Each call is timed as {@code expense.repository.calls}, tagged with its operation and outcome
+ * ({@code success}, {@code conflict}, {@code shed} by the {@link StorageLimiter} or {@code error}),
+ * and the documents it read or wrote are recorded as {@code expense.repository.documents}.
+ * Percentiles and histogram buckets are configured under {@code management.metrics.distribution}.
+ */
+@Component
+public class RepositoryMetrics {
+
+    public static final String CALLS = "expense.repository.calls";
+    public static final String DOCUMENTS = "expense.repository.documents";
+
+    private final MeterRegistry registry;
+
+    public RepositoryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Time an asynchronous call until its future completes, then record how many documents its result
+     * read and wrote. Pass null for a direction the operation never touches.
+     */
+    public <T> CompletableFuture<T> timed(String operation, Supplier<CompletableFuture<T>> call,
+                                          ToIntFunction<T> read, ToIntFunction<T> written) {
+        Timer.Sample sample = Timer.start(registry);
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            sample.stop(timer(operation, e));
+            throw e;
+        }
+        return future.whenComplete((result, error) -> {
+            sample.stop(timer(operation, error));
+            if (error == null && read != null) {
+                documents(operation, "read", read.applyAsInt(result));
+            }
+            if (error == null && written != null) {
+                documents(operation, "written", written.applyAsInt(result));
+            }
+        });
+    }
+
+    /**
+     * Time a blocking call that returns the number of documents it read.
+     */
+    public void timedBlocking(String operation, IntSupplier call) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            int read = call.getAsInt();
+            sample.stop(timer(operation, null));
+            documents(operation, "read", read);
+        } catch (RuntimeException e) {
+            sample.stop(timer(operation, e));
+            throw e;
+        }
+    }
+
+    public static <T> int one(T result) {
+        return 1;
+    }
+
+    private Timer timer(String operation, Throwable error) {
+        return Timer.builder(CALLS)
+                .description("Expense repository calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome(error))
+                .register(registry);
+    }
+
+    private void documents(String operation, String direction, int count) {
+        DistributionSummary.builder(DOCUMENTS)
+                .description("Documents read or written per expense repository call")
+                .baseUnit("documents")
+                .tag("operation", operation)
+                .tag("direction", direction)
+                .register(registry)
+                .record(count);
+    }
+
+    private static String outcome(Throwable error) {
+        if (error == null) {
+            return "success";
+        }
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof StorageOverloadedException) {
+            return "shed";
+        }
+        return cause instanceof ExpenseConflictException ? "conflict" : "error";
+    }
+}
@@ -0,0 +1,104 @@
+package com.expensetracker.service;
+
+import com.expensetracker.repository.ExpenseConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounds concurrent storage calls with one {@link AdaptiveConcurrencyLimit} for reads and one for
+ * writes, so slow writes cannot starve reads and the other way round. A call over the limit is not
+ * queued: it fails at once with {@link StorageOverloadedException}, which the API answers with 503
+ * and {@code Retry-After}. When storage slows down the limits shrink, the calls that are admitted
+ * keep finishing at close to normal latency and the excess is turned away cheaply.
+ */
+@Component
+public class StorageLimiter {
+
+    private final boolean enabled;
+    private final long retryAfterSeconds;
+    private final Bulkhead reads;
+    private final Bulkhead writes;
+
+    public StorageLimiter(MeterRegistry registry,
+                          @Value("${expense.limiter.enabled:true}") boolean enabled,
+                          @Value("${expense.limiter.initial-limit:20}") int initialLimit,
+                          @Value("${expense.limiter.min-limit:4}") int minLimit,
+                          @Value("${expense.limiter.max-limit:500}") int maxLimit,
+                          @Value("${expense.limiter.tolerance:2.0}") double tolerance,
+                          @Value("${expense.limiter.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.reads = new Bulkhead("reads", new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance),
+                registry);
+        this.writes = new Bulkhead("writes", new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance),
+                registry);
+    }
+
+    public <T> CompletableFuture<T> read(Supplier<CompletableFuture<T>> call) {
+        return reads.call(call);
+    }
+
+    public <T> CompletableFuture<T> write(Supplier<CompletableFuture<T>> call) {
+        return writes.call(call);
+    }
+
+    private final class Bulkhead {
+        private final String name;
+        private final AdaptiveConcurrencyLimit limit;
+        private final Counter shed;
+
+        Bulkhead(String name, AdaptiveConcurrencyLimit limit, MeterRegistry registry) {
+            this.name = name;
+            this.limit = limit;
+            this.shed = Counter.builder("expense.limiter.shed")
+                    .description("Storage calls refused because the concurrency limit was reached")
+                    .tag("bulkhead", name)
+                    .register(registry);
+            Gauge.builder("expense.limiter.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Current adaptive concurrency limit for storage calls")
+                    .tag("bulkhead", name)
+                    .register(registry);
+            Gauge.builder("expense.limiter.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Storage calls in flight")
+                    .tag("bulkhead", name)
+                    .register(registry);
+        }
+
+        <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+            if (!enabled) {
+                return call.get();
+            }
+            if (!limit.tryAcquire()) {
+                shed.increment();
+                return CompletableFuture.failedFuture(new StorageOverloadedException(name, retryAfterSeconds));
+            }
+
+            long start = System.nanoTime();
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                // A bad token or argument is rejected before storage is called
+                limit.release(System.nanoTime() - start, !(e instanceof IllegalArgumentException));
+                throw e;
+            }
+            return future.whenComplete((result, error) ->
+                    limit.release(System.nanoTime() - start, error != null && !isConflict(error)));
+        }
+    }
+
+    /**
+     * A lost version race says nothing about storage health.
+     */
+    private static boolean isConflict(Throwable error) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        return cause instanceof ExpenseConflictException;
+    }
+}
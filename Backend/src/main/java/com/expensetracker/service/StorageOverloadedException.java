@@ -0,0 +1,21 @@
+package com.expensetracker.service;
+
+/**
+ * Thrown instead of calling storage when its concurrency limit is reached, so the request can be
+ * answered with 503 right away rather than queue behind slow calls.
+ */
+public class StorageOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public StorageOverloadedException(String bulkhead, long retryAfterSeconds) {
+        super("Too many concurrent " + bulkhead + "; try again shortly");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
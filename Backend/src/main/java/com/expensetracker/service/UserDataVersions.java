@@ -0,0 +1,62 @@
+package com.expensetracker.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of each user's expense data on this instance, used as the ETag of list responses.
+ * Every write through {@link ExpenseService} moves the user to a new version. Versions come from one
+ * sequence and carry a random per-process epoch, so a tag is never reused across users or restarts.
+ * Entries expire like the expense cache, so writes made by another instance are picked up within the TTL.
+ */
+@Component
+public class UserDataVersions {
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Cache<String, Long> versions;
+
+    public UserDataVersions(
+            @Value("${expense.etag.max-users:100000}") long maxUsers,
+            @Value("${expense.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Strong ETag for a response built from the user's current data, or null for requests without a user.
+     * {@code variant} distinguishes responses that differ for the same data, such as query strings.
+     * Take the tag before reading the data: a write in between then only makes the tag stale, never the body.
+     */
+    public String eTag(String userId, String variant) {
+        if (userId == null) {
+            return null;
+        }
+        long version = versions.get(userId, key -> sequence.incrementAndGet());
+        String suffix = variant != null ? "-" + Integer.toHexString(variant.hashCode()) : "";
+        return "\"" + epoch + "-" + version + suffix + "\"";
+    }
+
+    public void bump(String userId) {
+        if (userId != null) {
+            versions.put(userId, sequence.incrementAndGet());
+        }
+    }
+
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        bump(event.getUserId());
+        if (event.getPrevious() != null) {
+            bump(event.getPrevious().getUserId());
+        }
+    }
+}
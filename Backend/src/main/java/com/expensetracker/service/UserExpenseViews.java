@@ -0,0 +1,125 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Per-user views of expenses, such as search indexes and analytics columns, built from the user's
+ * expense list on first use and then kept current from {@link ExpenseChangedEvent}s.
+ * <p>
+ * Each user has a generation that every change to their expenses moves on. A view is only cached if the
+ * generation it was built at is still current; that check and the changes to a cached view both run
+ * under the cache's lock for the user, so a build that overlapped a write is either dropped or has the
+ * write applied to it. A view expires once it has gone unused for the TTL, so a user who keeps using it
+ * never waits for a rebuild; writes this instance got no event for are picked up when it is rebuilt.
+ */
+final class UserExpenseViews<V> {
+
+    private final Function<String, CompletableFuture<List<Expense>>> loader;
+    private final Function<List<Expense>, V> builder;
+    private final BiConsumer<V, Expense> put;
+    private final BiConsumer<V, String> remove;
+    private final Cache<String, V> viewsByUser;
+    private final Cache<String, Long> generations;
+    private final AtomicLong generationSequence = new AtomicLong();
+
+    /**
+     * @param loader  loads a user's expenses without blocking
+     * @param builder builds a view from them
+     * @param put     adds or replaces an expense in a view
+     * @param remove  removes an expense from a view by ID
+     */
+    UserExpenseViews(long maxUsers, Duration ttl,
+                     Function<String, CompletableFuture<List<Expense>>> loader,
+                     Function<List<Expense>, V> builder,
+                     BiConsumer<V, Expense> put,
+                     BiConsumer<V, String> remove) {
+        this.loader = loader;
+        this.builder = builder;
+        this.put = put;
+        this.remove = remove;
+        this.viewsByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(ttl)
+                .build();
+        this.generations = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * The user's view without blocking, built if it is not cached.
+     */
+    CompletableFuture<V> get(String userId) {
+        if (userId == null) {
+            return loader.apply(null).thenApply(builder);
+        }
+        V cached = viewsByUser.getIfPresent(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // Generations come from one sequence, so one that expired is never handed out again
+        long generation = generations.get(userId, key -> generationSequence.incrementAndGet());
+        return loader.apply(userId).thenApply(expenses -> {
+            V view = builder.apply(expenses);
+            V current = viewsByUser.asMap().compute(userId, (key, existing) -> {
+                if (existing != null) {
+                    return existing;
+                }
+                Long latest = generations.getIfPresent(userId);
+                return latest != null && latest == generation ? view : null;
+            });
+            return current != null ? current : view;
+        });
+    }
+
+    void onExpenseChanged(ExpenseChangedEvent event) {
+        if (event.isBulk()) {
+            String userId = event.getUserId();
+            if (userId != null) {
+                moveGeneration(userId);
+                viewsByUser.invalidate(userId);
+            }
+            return;
+        }
+
+        Expense previous = event.getPrevious();
+        if (previous != null) {
+            change(previous.getUserId(), view -> remove.accept(view, previous.getId()));
+        }
+        Expense current = event.getCurrent();
+        if (current != null) {
+            change(current.getUserId(), view -> put.accept(view, current));
+        }
+    }
+
+    /**
+     * Apply a change to the user's cached view, if any. The generation moves first: a build that
+     * checks it later is dropped, and one that checked it earlier is cached before this runs.
+     */
+    private void change(String userId, Consumer<V> change) {
+        if (userId == null) {
+            return;
+        }
+        moveGeneration(userId);
+        viewsByUser.asMap().computeIfPresent(userId, (key, view) -> {
+            change.accept(view);
+            return view;
+        });
+    }
+
+    private void moveGeneration(String userId) {
+        generations.put(userId, generationSequence.incrementAndGet());
+    }
+}
@@ -0,0 +1,130 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.model.Expense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreateBatcherTest {
+
+    /** Batches handed to the commit function, in order. */
+    private final List<List<Expense>> commits = new CopyOnWriteArrayList<>();
+    private CreateBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    private static Expense expense(String title) {
+        return new Expense(null, title, new BigDecimal("1.00"), "Food", LocalDate.of(2024, 1, 1));
+    }
+
+    /**
+     * A commit that assigns IDs and succeeds straight away.
+     */
+    private CompletableFuture<Void> commitNow(List<Expense> batch) {
+        commits.add(List.copyOf(batch));
+        for (Expense expense : batch) {
+            expense.setId(expense.getTitle() + "-id");
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Test
+    void testFlushOnSize() {
+        batcher = new CreateBatcher(3, Duration.ofHours(1), this::commitNow);
+
+        CompletableFuture<Expense> first = batcher.submit(expense("a"));
+        CompletableFuture<Expense> second = batcher.submit(expense("b"));
+        assertFalse(first.isDone());
+        assertTrue(commits.isEmpty());
+
+        CompletableFuture<Expense> third = batcher.submit(expense("c"));
+
+        assertEquals(1, commits.size());
+        assertEquals(3, commits.get(0).size());
+        assertEquals("a-id", first.join().getId());
+        assertEquals("b-id", second.join().getId());
+        assertEquals("c-id", third.join().getId());
+
+        // The next create starts a new batch
+        CompletableFuture<Expense> fourth = batcher.submit(expense("d"));
+        assertFalse(fourth.isDone());
+        assertEquals(1, commits.size());
+    }
+
+    @Test
+    void testFlushOnTime() throws Exception {
+        batcher = new CreateBatcher(100, Duration.ofMillis(20), this::commitNow);
+
+        CompletableFuture<Expense> first = batcher.submit(expense("a"));
+        CompletableFuture<Expense> second = batcher.submit(expense("b"));
+
+        assertEquals("a-id", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("b-id", second.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1, commits.size());
+        assertEquals(2, commits.get(0).size());
+    }
+
+    @Test
+    void testFailedCommitFailsEveryCreateInBatch() {
+        RuntimeException failure = new RuntimeException("commit failed");
+        CompletableFuture<Void> commit = new CompletableFuture<>();
+        List<List<Expense>> batches = new ArrayList<>();
+        batcher = new CreateBatcher(2, Duration.ofHours(1), batch -> {
+            batches.add(batch);
+            return commit;
+        });
+
+        CompletableFuture<Expense> first = batcher.submit(expense("a"));
+        CompletableFuture<Expense> second = batcher.submit(expense("b"));
+        assertEquals(1, batches.size());
+        assertFalse(first.isDone());
+
+        commit.completeExceptionally(failure);
+
+        assertSame(failure, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(failure, assertThrows(CompletionException.class, second::join).getCause());
+    }
+
+    @Test
+    void testCommitThatThrowsFailsEveryCreateInBatch() {
+        batcher = new CreateBatcher(2, Duration.ofHours(1), batch -> {
+            throw new IllegalStateException("no connection");
+        });
+
+        CompletableFuture<Expense> first = batcher.submit(expense("a"));
+        CompletableFuture<Expense> second = batcher.submit(expense("b"));
+
+        assertInstanceOf(IllegalStateException.class, assertThrows(CompletionException.class, first::join).getCause());
+        assertInstanceOf(IllegalStateException.class, assertThrows(CompletionException.class, second::join).getCause());
+    }
+
+    @Test
+    void testCloseCommitsQueuedAndRejectsLaterCreates() {
+        batcher = new CreateBatcher(100, Duration.ofHours(1), this::commitNow);
+        CompletableFuture<Expense> queued = batcher.submit(expense("a"));
+
+        batcher.close();
+
+        assertEquals("a-id", queued.join().getId());
+        CompletableFuture<Expense> late = batcher.submit(expense("b"));
+        assertTrue(late.isCompletedExceptionally());
+        assertInstanceOf(IllegalStateException.class, assertThrows(CompletionException.class, late::join).getCause());
+        assertEquals(1, commits.size());
+    }
+}
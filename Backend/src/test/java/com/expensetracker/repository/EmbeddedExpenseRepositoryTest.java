@@ -0,0 +1,253 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseSummary;
+import com.expensetracker.model.Expense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedExpenseRepositoryTest {
+
+    private static final String USER = "user-1";
+
+    @TempDir
+    File tempDir;
+
+    private final List<EmbeddedExpenseRepository> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (EmbeddedExpenseRepository repository : opened) {
+            repository.close();
+        }
+    }
+
+    private EmbeddedExpenseRepository open(int snapshotEvery) throws IOException {
+        return open(snapshotEvery, 100_000);
+    }
+
+    private EmbeddedExpenseRepository open(int snapshotEvery, int maxTombstones) throws IOException {
+        EmbeddedExpenseRepository repository = new EmbeddedExpenseRepository();
+        ReflectionTestUtils.setField(repository, "dataDir", tempDir.getAbsolutePath());
+        ReflectionTestUtils.setField(repository, "snapshotEvery", snapshotEvery);
+        ReflectionTestUtils.setField(repository, "maxTombstones", maxTombstones);
+        repository.open();
+        opened.add(repository);
+        return repository;
+    }
+
+    /**
+     * Open a second store on the same directory without closing the first, as after a crash:
+     * nothing is flushed to a final snapshot.
+     */
+    private EmbeddedExpenseRepository reopen(int snapshotEvery) throws IOException {
+        return open(snapshotEvery);
+    }
+
+    private static Expense create(ExpenseRepository repository, String title, String amount, LocalDate date) {
+        return create(repository, USER, title, amount, date);
+    }
+
+    private static Expense create(ExpenseRepository repository, String userId, String title, String amount,
+                                  LocalDate date) {
+        Expense expense = new Expense(null, title, new BigDecimal(amount), "Food", date);
+        expense.setUserId(userId);
+        return repository.create(expense).join();
+    }
+
+    private static Map<String, Expense> byId(List<Expense> expenses) {
+        return expenses.stream().collect(Collectors.toMap(Expense::getId, expense -> expense));
+    }
+
+    private void awaitSnapshot() throws InterruptedException {
+        Path snapshot = tempDir.toPath().resolve("snapshot.ndjson");
+        for (int i = 0; i < 200 && !Files.exists(snapshot); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(snapshot), "snapshot was not written");
+    }
+
+    @Test
+    void testReplayAfterSnapshot() throws Exception {
+        EmbeddedExpenseRepository repository = open(3);
+        Expense coffee = create(repository, "Coffee", "3.50", LocalDate.of(2024, 1, 1));
+        Expense rent = create(repository, "Rent", "1200.00", LocalDate.of(2024, 1, 2));
+        create(repository, "Books", "25.10", LocalDate.of(2024, 2, 3));
+        awaitSnapshot();
+
+        // Written after the snapshot, so they are only in the newer segment; fewer than snapshotEvery,
+        // so no second snapshot is being written while the store is reopened
+        Expense update = new Expense(null, "Coffee beans", new BigDecimal("9.99"), "Food", LocalDate.of(2024, 1, 1));
+        update.setUserId(USER);
+        assertTrue(repository.update(coffee.getId(), update, USER, coffee.getVersion(), null).join().isPresent());
+        assertTrue(repository.delete(rent.getId(), USER, null, null).join().isPresent());
+        List<Expense> before = repository.findByUser(USER).join();
+        ExpenseSummary summaryBefore = repository.findSummary(USER).join();
+
+        EmbeddedExpenseRepository replayed = reopen(1000);
+
+        List<Expense> after = replayed.findByUser(USER).join();
+        assertEquals(before.stream().map(Expense::getId).toList(), after.stream().map(Expense::getId).toList());
+        Map<String, Expense> afterById = byId(after);
+        for (Expense expected : before) {
+            Expense actual = afterById.get(expected.getId());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(0, expected.getAmount().compareTo(actual.getAmount()));
+            assertEquals(expected.getDate(), actual.getDate());
+            assertEquals(expected.getVersion(), actual.getVersion());
+        }
+        assertEquals("Coffee beans", afterById.get(coffee.getId()).getTitle());
+        assertTrue(replayed.findById(rent.getId()).join().isEmpty());
+
+        ExpenseSummary summaryAfter = replayed.findSummary(USER).join();
+        assertEquals(0, summaryBefore.getTotalAmount().compareTo(summaryAfter.getTotalAmount()));
+        assertEquals(summaryBefore.getCount(), summaryAfter.getCount());
+        assertEquals(summaryBefore.getByMonth().keySet(), summaryAfter.getByMonth().keySet());
+
+        // New writes continue the sequence instead of reusing versions
+        Expense next = create(replayed, "Taxi", "18.00", LocalDate.of(2024, 2, 5));
+        assertTrue(next.getVersion() > update.getVersion() + 1);
+    }
+
+    @Test
+    void testReplayIgnoresTornLastEntry() throws Exception {
+        EmbeddedExpenseRepository repository = open(1000);
+        Expense coffee = create(repository, "Coffee", "3.50", LocalDate.of(2024, 1, 1));
+
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir.toPath())) {
+            segment = files.filter(path -> path.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        Files.writeString(segment, "{\"seq\":2,\"op\":\"put\",\"id\":\"x", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        EmbeddedExpenseRepository replayed = reopen(1000);
+
+        List<Expense> expenses = replayed.findByUser(USER).join();
+        assertEquals(1, expenses.size());
+        assertEquals(coffee.getId(), expenses.get(0).getId());
+    }
+
+    @Test
+    void testChangesPagedFromTokenRebuildTheList() throws Exception {
+        EmbeddedExpenseRepository repository = open(1000);
+        List<Expense> originals = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            originals.add(create(repository, "Expense " + i, "1.00", LocalDate.of(2024, 1, 1 + i)));
+        }
+
+        // Only the first page of the reset is read before the writes below
+        ExpenseChanges reset = repository.findChanges(USER, null, 2).join();
+        assertTrue(reset.isReset());
+        assertTrue(reset.isHasMore());
+        assertEquals(2, reset.getExpenses().size());
+        Map<String, Expense> replica = new HashMap<>(byId(reset.getExpenses()));
+
+        for (int i = 0; i < 2; i++) {
+            Expense original = originals.get(i);
+            Expense update = new Expense(null, "Updated " + i, new BigDecimal("2.00"), "Food", original.getDate());
+            update.setUserId(USER);
+            assertTrue(repository.update(original.getId(), update, USER, null, null).join().isPresent());
+        }
+        repository.delete(originals.get(4).getId(), USER, null, null).join();
+        for (int i = 0; i < 3; i++) {
+            create(repository, "New " + i, "3.00", LocalDate.of(2024, 2, 1 + i));
+        }
+        Expense shortLived = create(repository, "Short-lived", "4.00", LocalDate.of(2024, 3, 1));
+        repository.delete(shortLived.getId(), USER, null, null).join();
+        create(repository, "user-2", "Not mine", "5.00", LocalDate.of(2024, 3, 2));
+
+        String token = reset.getToken();
+        int pages = 0;
+        List<String> removed = new ArrayList<>();
+        ExpenseChanges changes;
+        do {
+            changes = repository.findChanges(USER, token, 2).join();
+            assertFalse(changes.isReset());
+            assertTrue(changes.getExpenses().size() <= 2);
+            assertTrue(changes.getRemoved().size() <= 2);
+            changes.getExpenses().forEach(expense -> replica.put(expense.getId(), expense));
+            changes.getRemoved().forEach(replica::remove);
+            removed.addAll(changes.getRemoved());
+            token = changes.getToken();
+            pages++;
+        } while (changes.isHasMore());
+
+        assertTrue(pages > 1, "expected several pages, got " + pages);
+        assertEquals(Set.of(originals.get(4).getId(), shortLived.getId()), Set.copyOf(removed));
+        Map<String, Expense> current = byId(repository.findByUser(USER).join());
+        assertEquals(current.keySet(), replica.keySet());
+        current.forEach((id, expense) -> assertEquals(expense.getTitle(), replica.get(id).getTitle()));
+
+        // Nothing changed since the last token
+        ExpenseChanges none = repository.findChanges(USER, token, 2).join();
+        assertTrue(none.getExpenses().isEmpty());
+        assertTrue(none.getRemoved().isEmpty());
+        assertFalse(none.isHasMore());
+        assertFalse(none.isReset());
+    }
+
+    @Test
+    void testResetIsPagedNewestFirst() throws Exception {
+        EmbeddedExpenseRepository repository = open(1000);
+        for (int i = 1; i <= 5; i++) {
+            create(repository, "Expense " + i, "1.00", LocalDate.of(2024, 1, i));
+        }
+
+        List<LocalDate> dates = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        ExpenseChanges changes = repository.findChanges(USER, null, 2).join();
+        assertTrue(changes.isReset());
+        while (true) {
+            changes.getExpenses().forEach(expense -> dates.add(expense.getDate()));
+            sizes.add(changes.getExpenses().size());
+            if (!changes.isHasMore()) {
+                break;
+            }
+            changes = repository.findChanges(USER, changes.getToken(), 2).join();
+            assertFalse(changes.isReset());
+        }
+
+        assertEquals(List.of(2, 2, 1), sizes);
+        assertEquals(List.of(LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 4), LocalDate.of(2024, 1, 3),
+                LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1)), dates);
+        assertTrue(repository.findChanges(USER, changes.getToken(), 2).join().getExpenses().isEmpty());
+    }
+
+    @Test
+    void testTokenBeforeForgottenDeletionsIsReset() throws Exception {
+        EmbeddedExpenseRepository repository = open(1000, 2);
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            expenses.add(create(repository, "Expense " + i, "1.00", LocalDate.of(2024, 1, 1 + i)));
+        }
+        String token = repository.findChanges(USER, null, 10).join().getToken();
+
+        for (int i = 0; i < 3; i++) {
+            repository.delete(expenses.get(i).getId(), USER, null, null).join();
+        }
+
+        ExpenseChanges changes = repository.findChanges(USER, token, 10).join();
+        assertTrue(changes.isReset());
+        assertEquals(List.of(expenses.get(3).getId()), changes.getExpenses().stream().map(Expense::getId).toList());
+    }
+}
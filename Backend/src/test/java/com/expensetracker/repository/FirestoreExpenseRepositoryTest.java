@@ -0,0 +1,432 @@
+package com.expensetracker.repository;
+
+import com.expensetracker.dto.ExpenseChanges;
+import com.expensetracker.dto.ExpenseSummary;
+import com.expensetracker.model.Expense;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.api.gax.rpc.UnavailableException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.BulkWriterOptions;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Precondition;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Conflict handling of conditional updates, the summary around bulk imports and paged change resets,
+ * against a mocked Firestore.
+ */
+class FirestoreExpenseRepositoryTest {
+
+    private static final String USER = "user-1";
+    private static final String ID = "expense-1";
+    /** Version of the copy the caller knows. */
+    private static final long KNOWN_VERSION = 1_700_000_000_000_000L;
+    /** Version of the document after a concurrent write. */
+    private static final long CURRENT_VERSION = KNOWN_VERSION + 5_000;
+
+    private Firestore firestore;
+    private DocumentReference document;
+    private WriteBatch batch;
+    private FirestoreExpenseRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        firestore = mock(Firestore.class);
+        CollectionReference collection = mock(CollectionReference.class);
+        document = mock(DocumentReference.class);
+        batch = mock(WriteBatch.class);
+        when(firestore.collection(anyString())).thenReturn(collection);
+        when(collection.document(anyString())).thenReturn(document);
+        when(firestore.batch()).thenReturn(batch);
+
+        DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+        when(snapshot.exists()).thenReturn(true);
+        when(snapshot.getId()).thenReturn(ID);
+        when(snapshot.getData()).thenReturn(Map.of(
+                "title", "Coffee",
+                "amountMinor", 350L,
+                "category", "Food",
+                "date", Timestamp.ofTimeSecondsAndNanos(1_704_067_200L, 0),
+                "userId", USER));
+        when(snapshot.getUpdateTime()).thenReturn(ExpenseDocuments.toUpdateTime(CURRENT_VERSION));
+        when(document.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+
+        repository = new FirestoreExpenseRepository();
+        ReflectionTestUtils.setField(repository, "firestore", firestore);
+    }
+
+    private static Expense expense(String title, long version) {
+        Expense expense = new Expense(ID, title, new BigDecimal("3.50"), "Food", LocalDate.of(2024, 1, 1));
+        expense.setUserId(USER);
+        expense.setVersion(version);
+        return expense;
+    }
+
+    private static ApiFuture<List<WriteResult>> committed(long version) {
+        WriteResult result = mock(WriteResult.class);
+        when(result.getUpdateTime()).thenReturn(ExpenseDocuments.toUpdateTime(version));
+        return ApiFutures.immediateFuture(List.of(result));
+    }
+
+    private static <T> ApiFuture<T> failed(ApiException error) {
+        return ApiFutures.immediateFailedFuture(error);
+    }
+
+    private static ApiException preconditionFailed() {
+        return new FailedPreconditionException("stale update time", null,
+                GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION), false);
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> future) {
+        CompletionException error = assertThrows(CompletionException.class, future::join);
+        return error.getCause();
+    }
+
+    @Test
+    void testStaleExpectedVersionConflictsWithoutWriting() {
+        Expense updated = expense("Coffee beans", KNOWN_VERSION);
+
+        Throwable error = failureOf(repository.update(ID, updated, USER, KNOWN_VERSION, null));
+
+        assertInstanceOf(ExpenseConflictException.class, error);
+        verify(document).get();
+        verify(firestore, never()).batch();
+    }
+
+    @Test
+    void testKnownCopyIsWrittenWithItsUpdateTimeAsPrecondition() {
+        ApiFuture<List<WriteResult>> commit = committed(CURRENT_VERSION);
+        when(batch.commit()).thenReturn(commit);
+        Expense known = expense("Coffee", KNOWN_VERSION);
+        Expense updated = expense("Coffee beans", KNOWN_VERSION);
+
+        Optional<Expense> previous = repository.update(ID, updated, USER, KNOWN_VERSION, known).join();
+
+        assertSame(known, previous.orElseThrow());
+        assertEquals(CURRENT_VERSION, updated.getVersion());
+        verify(document, never()).get();
+        verify(batch).update(eq(document), anyMap(), eq(Precondition.updatedAt(ExpenseDocuments.toUpdateTime(KNOWN_VERSION))));
+    }
+
+    @Test
+    void testPreconditionFailureWithExpectedVersionIsConflict() {
+        when(batch.commit()).thenReturn(failed(preconditionFailed()));
+        Expense known = expense("Coffee", KNOWN_VERSION);
+
+        Throwable error = failureOf(repository.update(ID, expense("Coffee beans", KNOWN_VERSION), USER, KNOWN_VERSION, known));
+
+        assertInstanceOf(ExpenseConflictException.class, error);
+        verify(batch, times(1)).commit();
+        verify(document, never()).get();
+    }
+
+    @Test
+    void testPreconditionFailureWithoutExpectedVersionRetriesFromFreshRead() {
+        ApiFuture<List<WriteResult>> retried = committed(CURRENT_VERSION + 1);
+        when(batch.commit())
+                .thenReturn(failed(preconditionFailed()))
+                .thenReturn(retried);
+        Expense known = expense("Coffee", KNOWN_VERSION);
+        Expense updated = expense("Coffee beans", KNOWN_VERSION);
+
+        Optional<Expense> previous = repository.update(ID, updated, USER, null, known).join();
+
+        assertEquals(CURRENT_VERSION, previous.orElseThrow().getVersion());
+        assertEquals(CURRENT_VERSION + 1, updated.getVersion());
+        verify(document).get();
+        verify(batch, times(2)).commit();
+        verify(batch).update(eq(document), anyMap(), eq(Precondition.updatedAt(ExpenseDocuments.toUpdateTime(CURRENT_VERSION))));
+    }
+
+    @Test
+    void testRetriesStopAfterMaxAttempts() {
+        when(batch.commit()).thenReturn(failed(preconditionFailed()));
+
+        Throwable error = failureOf(repository.update(ID, expense("Coffee beans", KNOWN_VERSION), USER, null,
+                expense("Coffee", KNOWN_VERSION)));
+
+        assertInstanceOf(ExpenseConflictException.class, error);
+        verify(batch, times(3)).commit();
+    }
+
+    @Test
+    void testOtherFailuresAreNotConflicts() {
+        UnavailableException unavailable = new UnavailableException("backend unavailable", null,
+                GrpcStatusCode.of(Status.Code.UNAVAILABLE), true);
+        when(batch.commit()).thenReturn(failed(unavailable));
+
+        Throwable error = failureOf(repository.update(ID, expense("Coffee beans", KNOWN_VERSION), USER, null,
+                expense("Coffee", KNOWN_VERSION)));
+
+        assertSame(unavailable, error);
+        verify(batch, times(1)).commit();
+    }
+
+    @Test
+    void testOtherUsersExpenseIsNotWritten() {
+        Expense known = expense("Coffee", KNOWN_VERSION);
+
+        Optional<Expense> previous = repository.update(ID, expense("Coffee beans", KNOWN_VERSION), "user-2",
+                KNOWN_VERSION, known).join();
+
+        assertTrue(previous.isEmpty());
+        verify(firestore, never()).batch();
+        verify(batch, never()).update(any(DocumentReference.class), anyMap(), any(Precondition.class));
+    }
+
+    /**
+     * A summary document and expense rows held in memory, with rebuilds run against a mocked transaction.
+     */
+    private final class FakeSummaryStore {
+        final Map<String, Object> summary = new HashMap<>();
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        final BulkWriter bulkWriter = mock(BulkWriter.class);
+
+        FakeSummaryStore() throws Exception {
+            CollectionReference summaries = mock(CollectionReference.class);
+            DocumentReference summaryRef = mock(DocumentReference.class);
+            when(firestore.collection("expense_summaries")).thenReturn(summaries);
+            when(summaries.document(USER)).thenReturn(summaryRef);
+            when(summaryRef.set(anyMap(), any(SetOptions.class))).thenAnswer(invocation -> {
+                summary.putAll(invocation.getArgument(0));
+                return ApiFutures.immediateFuture(mock(WriteResult.class));
+            });
+            when(summaryRef.get()).thenAnswer(invocation -> ApiFutures.immediateFuture(summarySnapshot()));
+
+            CollectionReference expenses = mock(CollectionReference.class);
+            Query byUser = mock(Query.class);
+            when(firestore.collection("expenses")).thenReturn(expenses);
+            when(expenses.whereEqualTo("userId", USER)).thenReturn(byUser);
+            when(expenses.document()).thenAnswer(invocation -> {
+                DocumentReference row = mock(DocumentReference.class);
+                when(row.getId()).thenReturn("row-" + rows.size());
+                return row;
+            });
+
+            when(firestore.bulkWriter(any(BulkWriterOptions.class))).thenReturn(bulkWriter);
+            when(bulkWriter.create(any(DocumentReference.class), anyMap())).thenAnswer(invocation -> {
+                rows.add(invocation.getArgument(1));
+                return ApiFutures.immediateFuture(mock(WriteResult.class));
+            });
+
+            Transaction transaction = mock(Transaction.class);
+            when(transaction.get(summaryRef)).thenAnswer(invocation -> ApiFutures.immediateFuture(summarySnapshot()));
+            when(transaction.get(byUser)).thenAnswer(invocation -> ApiFutures.immediateFuture(rowsSnapshot()));
+            when(transaction.set(eq(summaryRef), anyMap())).thenAnswer(invocation -> {
+                summary.clear();
+                summary.putAll(invocation.getArgument(1));
+                return transaction;
+            });
+            when(firestore.runTransaction(any())).thenAnswer(invocation -> {
+                Transaction.Function<?> function = invocation.getArgument(0);
+                return ApiFutures.immediateFuture(function.updateCallback(transaction));
+            });
+        }
+
+        private DocumentSnapshot summarySnapshot() {
+            Map<String, Object> data = new HashMap<>(summary);
+            DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+            when(snapshot.exists()).thenReturn(!data.isEmpty());
+            when(snapshot.getBoolean("complete")).thenReturn((Boolean) data.get("complete"));
+            when(snapshot.getLong("format")).thenReturn((Long) data.get("format"));
+            when(snapshot.getData()).thenReturn(data);
+            return snapshot;
+        }
+
+        private QuerySnapshot rowsSnapshot() {
+            List<QueryDocumentSnapshot> documents = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+                when(document.getId()).thenReturn("row-" + i);
+                when(document.getData()).thenReturn(rows.get(i));
+                documents.add(document);
+            }
+            QuerySnapshot snapshot = mock(QuerySnapshot.class);
+            when(snapshot.getDocuments()).thenReturn(documents);
+            return snapshot;
+        }
+    }
+
+    private static Expense row(String title) {
+        Expense expense = new Expense(null, title, new BigDecimal("1.50"), "Food", LocalDate.of(2024, 1, 1));
+        expense.setUserId(USER);
+        return expense;
+    }
+
+    private FakeSummaryStore importStore() throws Exception {
+        ReflectionTestUtils.setField(repository, "importInitialOpsPerSecond", 500);
+        ReflectionTestUtils.setField(repository, "importMaxOpsPerSecond", 5000);
+        return new FakeSummaryStore();
+    }
+
+    @Test
+    void testSummaryReadDuringImportDoesNotMissLaterRows() throws Exception {
+        FakeSummaryStore store = importStore();
+
+        ExpenseRepository.BulkInsert insert = repository.bulkInsert(USER);
+        insert.add(row("First")).join();
+        // A watch event makes the client read the summary mid-import; it rebuilds from one row
+        assertEquals(1, repository.findSummary(USER).join().getCount());
+        insert.add(row("Second")).join();
+        insert.add(row("Third")).join();
+        insert.close();
+
+        ExpenseSummary summary = repository.findSummary(USER).join();
+        assertEquals(3, summary.getCount());
+        assertEquals(0, new BigDecimal("4.50").compareTo(summary.getTotalAmount()));
+        assertEquals(Boolean.TRUE, store.summary.get("complete"));
+    }
+
+    @Test
+    void testFailedImportFlushStillMarksSummaryForRebuild() throws Exception {
+        FakeSummaryStore store = importStore();
+        doThrow(new ExecutionException(new RuntimeException("flush failed"))).when(store.bulkWriter).close();
+
+        ExpenseRepository.BulkInsert insert = repository.bulkInsert(USER);
+        insert.add(row("First")).join();
+        repository.findSummary(USER).join();
+        insert.add(row("Second")).join();
+
+        assertThrows(RuntimeException.class, insert::close);
+
+        assertEquals(Boolean.FALSE, store.summary.get("complete"));
+        assertEquals(2, repository.findSummary(USER).join().getCount());
+    }
+
+    /**
+     * Mock {@code query.get()} answering with {@code documents} read at {@code readTime}.
+     */
+    private static void answer(Query query, List<QueryDocumentSnapshot> documents, Timestamp readTime) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+        when(snapshot.getReadTime()).thenReturn(readTime);
+        ApiFuture<QuerySnapshot> result = ApiFutures.immediateFuture(snapshot);
+        when(query.get()).thenReturn(result);
+    }
+
+    /**
+     * Mock the change query over {@code collection} that resumes after everything stamped at {@code since}.
+     */
+    private static Query changesAfter(CollectionReference collection, String timeField, Timestamp since) {
+        Query byUser = mock(Query.class);
+        Query byTime = mock(Query.class);
+        Query byId = mock(Query.class);
+        Query limited = mock(Query.class);
+        Query after = mock(Query.class);
+        when(collection.whereEqualTo("userId", USER)).thenReturn(byUser);
+        when(byUser.orderBy(timeField)).thenReturn(byTime);
+        when(byTime.orderBy(FieldPath.documentId())).thenReturn(byId);
+        when(byId.limit(anyInt())).thenReturn(limited);
+        when(limited.whereGreaterThan(timeField, since)).thenReturn(after);
+        answer(after, List.of(), Timestamp.now());
+        return limited;
+    }
+
+    @Test
+    void testResetIsPagedAndChangesResumeFromItsStart() {
+        ReflectionTestUtils.setField(repository, "tombstoneRetentionDays", 30L);
+        Timestamp startedAt = Timestamp.now();
+
+        // Five expenses, newest first as the reset reads them
+        List<QueryDocumentSnapshot> documents = new ArrayList<>();
+        for (int day = 5; day >= 1; day--) {
+            Timestamp date = ExpenseDocuments.toTimestamp(LocalDate.of(2024, 1, day));
+            QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+            when(document.getId()).thenReturn("expense-" + day);
+            when(document.getTimestamp("date")).thenReturn(date);
+            when(document.getData()).thenReturn(Map.of(
+                    "title", "Expense " + day, "amountMinor", 100L, "category", "Food", "date", date, "userId", USER));
+            when(document.getUpdateTime()).thenReturn(startedAt);
+            documents.add(document);
+        }
+
+        CollectionReference expenses = mock(CollectionReference.class);
+        when(firestore.collection("expenses")).thenReturn(expenses);
+        Query byUser = mock(Query.class);
+        Query byDate = mock(Query.class);
+        Query ordered = mock(Query.class);
+        Query limited = mock(Query.class);
+        when(expenses.whereEqualTo("userId", USER)).thenReturn(byUser);
+        when(byUser.orderBy("date", Query.Direction.DESCENDING)).thenReturn(byDate);
+        when(byDate.orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)).thenReturn(ordered);
+        when(ordered.limit(3)).thenReturn(limited);
+        answer(limited, documents.subList(0, 3), startedAt);
+        // A later page resumes after the (date, ID) of the last expense sent
+        when(limited.startAfter(any(), any())).thenAnswer(invocation -> {
+            String lastId = invocation.getArgument(1);
+            int next = 0;
+            while (!documents.get(next).getId().equals(lastId)) {
+                next++;
+            }
+            assertEquals(documents.get(next).getTimestamp("date"), invocation.getArgument(0));
+            Query page = mock(Query.class);
+            answer(page, documents.subList(next + 1, Math.min(next + 4, documents.size())),
+                    Timestamp.ofTimeSecondsAndNanos(startedAt.getSeconds() + 60, 0));
+            return page;
+        });
+
+        List<String> ids = new ArrayList<>();
+        ExpenseChanges changes = repository.findChanges(USER, null, 2).join();
+        assertTrue(changes.isReset());
+        changes.getExpenses().forEach(expense -> ids.add(expense.getId()));
+        for (int page = 2; page <= 3; page++) {
+            assertTrue(changes.isHasMore());
+            changes = repository.findChanges(USER, changes.getToken(), 2).join();
+            assertFalse(changes.isReset());
+            changes.getExpenses().forEach(expense -> ids.add(expense.getId()));
+        }
+
+        assertEquals(List.of("expense-5", "expense-4", "expense-3", "expense-2", "expense-1"), ids);
+        // Writes made while the reset was paged are read next
+        assertTrue(changes.isHasMore());
+
+        // The delta after the reset starts from the first page's read time, not the last one's
+        CollectionReference tombstones = mock(CollectionReference.class);
+        when(firestore.collection("expense_tombstones")).thenReturn(tombstones);
+        Query updates = changesAfter(expenses, "updatedAt", startedAt);
+        Query deletions = changesAfter(tombstones, "deletedAt", startedAt);
+
+        ExpenseChanges next = repository.findChanges(USER, changes.getToken(), 2).join();
+
+        assertFalse(next.isReset());
+        assertFalse(next.isHasMore());
+        verify(updates).whereGreaterThan("updatedAt", startedAt);
+        verify(deletions).whereGreaterThan("deletedAt", startedAt);
+    }
+}
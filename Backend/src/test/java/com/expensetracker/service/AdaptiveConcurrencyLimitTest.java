@@ -0,0 +1,93 @@
+package com.expensetracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    /**
+     * Run {@code rounds} rounds of {@code calls} concurrent calls that each take {@code rttNanos}.
+     */
+    private static void run(AdaptiveConcurrencyLimit limit, int rounds, int calls, long rttNanos) {
+        for (int round = 0; round < rounds; round++) {
+            int admitted = 0;
+            while (admitted < calls && limit.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limit.release(rttNanos, false);
+            }
+        }
+    }
+
+    @Test
+    void testInitialLimitIsClamped() {
+        assertEquals(5, new AdaptiveConcurrencyLimit(1, 5, 50, 2.0).getLimit());
+        assertEquals(50, new AdaptiveConcurrencyLimit(500, 5, 50, 2.0).getLimit());
+    }
+
+    @Test
+    void testAdmitsUpToLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 1, 10, 2.0);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(3, limit.getInFlight());
+
+        limit.release(10 * MILLIS, false);
+        assertEquals(2, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void testFailureBacksOffToMinimum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 50, 2.0);
+
+        limit.tryAcquire();
+        limit.release(10 * MILLIS, true);
+        assertEquals(18, limit.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(10 * MILLIS, true);
+        }
+        assertEquals(4, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void testGrowsUpToMaximumWhileLatencyHolds() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 40, 2.0);
+
+        run(limit, 200, Integer.MAX_VALUE, 10 * MILLIS);
+
+        assertEquals(40, limit.getLimit());
+    }
+
+    @Test
+    void testDoesNotGrowWhileMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 40, 2.0);
+
+        run(limit, 200, 2, 10 * MILLIS);
+
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void testShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 40, 2.0);
+        run(limit, 200, Integer.MAX_VALUE, 10 * MILLIS);
+        int grown = limit.getLimit();
+
+        // Latency well beyond tolerance of the no-load latency
+        run(limit, 20, Integer.MAX_VALUE, 200 * MILLIS);
+
+        assertTrue(limit.getLimit() < grown / 2, "limit " + limit.getLimit() + " after growing to " + grown);
+        assertTrue(limit.getLimit() >= 2);
+    }
+}
@@ -0,0 +1,127 @@
+package com.expensetracker.service;
+
+import com.expensetracker.dto.ExpenseAnalytics;
+import com.expensetracker.model.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseColumnsTest {
+
+    private static Expense expense(String id, String amount, String category, LocalDate date) {
+        return new Expense(id, "Expense " + id, amount != null ? new BigDecimal(amount) : null, category, date);
+    }
+
+    private static List<String> ids(List<Expense> expenses) {
+        return expenses.stream().map(Expense::getId).toList();
+    }
+
+    @Test
+    void testAggregate() {
+        ExpenseColumns columns = new ExpenseColumns(List.of(
+                expense("1", "10.00", "Food", LocalDate.of(2024, 1, 1)),   // Monday
+                expense("2", "2.50", "Travel", LocalDate.of(2024, 1, 6)),  // Saturday
+                expense("3", "7.25", "Food", LocalDate.of(2024, 3, 4)),    // Monday
+                expense("4", null, "Food", LocalDate.of(2024, 3, 5)),
+                expense("5", "1.00", "Food", null)));
+
+        ExpenseAnalytics analytics = columns.aggregate(null, null, 2);
+
+        assertEquals(3, columns.size());
+        assertEquals(0, new BigDecimal("19.75").compareTo(analytics.getTotalAmount()));
+        assertEquals(3, analytics.getCount());
+        assertEquals(List.of("2024-01", "2024-03"),
+                analytics.getMonthly().stream().map(ExpenseAnalytics.MonthTotal::getMonth).toList());
+        assertEquals(2, analytics.getMonthly().get(0).getCount());
+        assertEquals(List.of("Food", "Travel"), new ArrayList<>(analytics.getByCategory().keySet()));
+        assertEquals(0, new BigDecimal("17.25").compareTo(analytics.getByCategory().get("Food")));
+        assertEquals(0, new BigDecimal("17.25").compareTo(analytics.getByDayOfWeek().get("MONDAY")));
+        assertEquals(0, new BigDecimal("2.50").compareTo(analytics.getByDayOfWeek().get("SATURDAY")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(analytics.getByDayOfWeek().get("SUNDAY")));
+        assertEquals(List.of("1", "3"), ids(analytics.getTop()));
+    }
+
+    @Test
+    void testAggregateDateRange() {
+        ExpenseColumns columns = new ExpenseColumns(List.of(
+                expense("1", "10.00", "Food", LocalDate.of(2024, 1, 1)),
+                expense("2", "2.50", "Travel", LocalDate.of(2024, 1, 6)),
+                expense("3", "7.25", "Food", LocalDate.of(2024, 3, 4))));
+
+        ExpenseAnalytics analytics = columns.aggregate(LocalDate.of(2024, 1, 6), LocalDate.of(2024, 3, 4), 5);
+
+        assertEquals(2, analytics.getCount());
+        assertEquals(0, new BigDecimal("9.75").compareTo(analytics.getTotalAmount()));
+        assertEquals(List.of("3", "2"), ids(analytics.getTop()));
+    }
+
+    @Test
+    void testRemoveMovesLastRowIntoGap() {
+        ExpenseColumns columns = new ExpenseColumns(List.of(
+                expense("1", "1.00", "Food", LocalDate.of(2024, 1, 1)),
+                expense("2", "2.00", "Travel", LocalDate.of(2024, 1, 2)),
+                expense("3", "3.00", "Rent", LocalDate.of(2024, 1, 3))));
+
+        columns.remove("1");
+        columns.remove("missing");
+        // Row 3 now sits where row 1 was; replacing and removing it must find it there
+        columns.put(expense("3", "30.00", "Rent", LocalDate.of(2024, 1, 3)));
+        columns.put(expense("4", "4.00", "Food", LocalDate.of(2024, 1, 4)));
+        columns.remove("2");
+
+        ExpenseAnalytics analytics = columns.aggregate(null, null, 10);
+        assertEquals(2, columns.size());
+        assertEquals(0, new BigDecimal("34.00").compareTo(analytics.getTotalAmount()));
+        assertEquals(List.of("3", "4"), ids(analytics.getTop()));
+        assertEquals(0, new BigDecimal("30.00").compareTo(analytics.getTop().get(0).getAmount()));
+        assertFalse(analytics.getByCategory().containsKey("Travel"));
+
+        // An expense that loses its amount is dropped rather than kept with the old one
+        columns.put(expense("4", null, "Food", LocalDate.of(2024, 1, 4)));
+        assertEquals(1, columns.size());
+    }
+
+    @Test
+    void testTopMatchesFullSort() {
+        Random random = new Random(42);
+        Map<String, Expense> live = new HashMap<>();
+        ExpenseColumns columns = new ExpenseColumns(List.of());
+        for (int i = 0; i < 2000; i++) {
+            String id = Integer.toString(random.nextInt(500));
+            if (random.nextInt(4) == 0) {
+                columns.remove(id);
+                live.remove(id);
+            } else {
+                // Few distinct amounts so ties are common
+                Expense expense = expense(id, random.nextInt(50) + ".00", "Food",
+                        LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365)));
+                columns.put(expense);
+                live.put(id, expense);
+            }
+        }
+        assertEquals(live.size(), columns.size());
+
+        for (int top : new int[]{0, 1, 7, 50, live.size() + 10}) {
+            List<Expense> expected = live.values().stream()
+                    .sorted(Comparator.comparing(Expense::getAmount).reversed())
+                    .limit(top)
+                    .toList();
+            List<Expense> actual = columns.aggregate(null, null, top).getTop();
+            assertEquals(expected.size(), actual.size(), "top " + top);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(0, expected.get(i).getAmount().compareTo(actual.get(i).getAmount()), "top " + top + " at " + i);
+                Expense stored = live.get(actual.get(i).getId());
+                assertEquals(0, stored.getAmount().compareTo(actual.get(i).getAmount()));
+            }
+        }
+    }
+}
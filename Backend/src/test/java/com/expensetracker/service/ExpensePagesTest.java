@@ -0,0 +1,89 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+import com.expensetracker.model.ExpensePage;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpensePagesTest {
+
+    /** Events in the order they happened: "read <token>" when a page is requested, "page <ids>" when handed on. */
+    private final List<String> events = new ArrayList<>();
+    /** Pages by token, completed when the test says so. */
+    private final Map<String, CompletableFuture<ExpensePage>> reads = new HashMap<>();
+    private List<Expense> collected;
+
+    private static Expense expense(String id) {
+        return new Expense(id, "Expense " + id, BigDecimal.ONE, "Food", LocalDate.of(2024, 1, 1));
+    }
+
+    private static ExpensePage page(String nextPageToken, String... ids) {
+        List<Expense> expenses = new ArrayList<>();
+        for (String id : ids) {
+            expenses.add(expense(id));
+        }
+        return new ExpensePage(expenses, nextPageToken);
+    }
+
+    private ExpensePages pages(ExpensePage first, int collectUpTo) {
+        return new ExpensePages(first, token -> {
+            events.add("read " + token);
+            return reads.computeIfAbsent(token, key -> new CompletableFuture<>());
+        }, collectUpTo, all -> collected = all);
+    }
+
+    private void record(List<Expense> page) {
+        events.add("page " + String.join(",", page.stream().map(Expense::getId).toList()));
+    }
+
+    @Test
+    void testNextPageIsRequestedBeforeCurrentIsHandedOn() {
+        reads.put("b", CompletableFuture.completedFuture(page("c", "3", "4")));
+        reads.put("c", CompletableFuture.completedFuture(page(null, "5")));
+
+        pages(page("b", "1", "2"), 10).forEach(this::record);
+
+        assertEquals(List.of("read b", "page 1,2", "read c", "page 3,4", "page 5"), events);
+        assertEquals(List.of("1", "2", "3", "4", "5"), collected.stream().map(Expense::getId).toList());
+    }
+
+    @Test
+    void testListLongerThanLimitIsNotCollected() {
+        reads.put("b", CompletableFuture.completedFuture(page(null, "3", "4")));
+
+        pages(page("b", "1", "2"), 3).forEach(this::record);
+
+        assertEquals(List.of("read b", "page 1,2", "page 3,4"), events);
+        assertNull(collected);
+    }
+
+    @Test
+    void testFailedPageIsThrownAfterPagesBeforeIt() {
+        RuntimeException failure = new RuntimeException("read failed");
+        reads.put("b", CompletableFuture.failedFuture(failure));
+        ExpensePages pages = pages(page("b", "1"), 10);
+
+        CompletionException thrown = assertThrows(CompletionException.class, () -> pages.forEach(this::record));
+
+        assertSame(failure, thrown.getCause());
+        assertEquals(List.of("read b", "page 1"), events);
+        assertNull(collected);
+    }
+
+    @Test
+    void testInMemoryListIsOnePage() {
+        ExpensePages.of(List.of(expense("1"), expense("2"))).forEach(this::record);
+
+        assertEquals(List.of("page 1,2"), events);
+    }
+}
@@ -0,0 +1,110 @@
+package com.expensetracker.service;
+
+import com.expensetracker.model.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseSearchIndexTest {
+
+    private static Expense expense(String id, String title, String category, LocalDate date) {
+        return new Expense(id, title, BigDecimal.ONE, category, date);
+    }
+
+    private static List<String> ids(ExpenseSearchIndex.Result result) {
+        return result.expenses().stream().map(Expense::getId).toList();
+    }
+
+    @Test
+    void testRanking() {
+        ExpenseSearchIndex index = new ExpenseSearchIndex(List.of(
+                expense("inner", "Supercoffee", "Food", LocalDate.of(2024, 1, 1)),
+                expense("prefix", "Coffeehouse", "Food", LocalDate.of(2024, 1, 2)),
+                expense("word", "Morning coffee", "Food", LocalDate.of(2024, 1, 3)),
+                expense("category", "Beans", "Coffee", LocalDate.of(2024, 1, 4)),
+                expense("other", "Rent", "Housing", LocalDate.of(2024, 1, 5))));
+
+        ExpenseSearchIndex.Result result = index.search("COFFEE", 10);
+
+        // A title match counts double, so even a prefix in the title beats a whole word in the category
+        assertEquals(List.of("word", "prefix", "category", "inner"), ids(result));
+        assertEquals(4, result.total());
+    }
+
+    @Test
+    void testShortTermsMatchWordStarts() {
+        ExpenseSearchIndex index = new ExpenseSearchIndex(List.of(
+                expense("1", "Groceries", "Food", LocalDate.of(2024, 1, 1)),
+                expense("2", "Big groceries run", "Food", LocalDate.of(2024, 1, 2)),
+                expense("3", "Ogre toy", "Gifts", LocalDate.of(2024, 1, 3))));
+
+        assertEquals(List.of("2", "1"), ids(index.search("gr", 10)));
+        assertEquals(List.of("2"), ids(index.search("gro run", 10)));
+        assertEquals(0, index.search("gro xyz", 10).total());
+        assertEquals(0, index.search("  ", 10).total());
+    }
+
+    @Test
+    void testTopHitsAreBestOfAllMatches() {
+        List<Expense> expenses = new ArrayList<>();
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < 500; i++) {
+            expenses.add(expense("taxi-" + i, "Taxi ride", "Travel", start.plusDays(i)));
+            expenses.add(expense("bus-" + i, "Bus ride", "Travel", start.plusDays(i)));
+        }
+        ExpenseSearchIndex index = new ExpenseSearchIndex(expenses);
+
+        ExpenseSearchIndex.Result result = index.search("taxi", 5);
+
+        assertEquals(500, result.total());
+        assertEquals(List.of("taxi-499", "taxi-498", "taxi-497", "taxi-496", "taxi-495"), ids(result));
+        assertEquals(0, index.search("taxi", 0).expenses().size());
+    }
+
+    @Test
+    void testPutReplacesAndRemoveHides() {
+        ExpenseSearchIndex index = new ExpenseSearchIndex(List.of(
+                expense("1", "Coffee", "Food", LocalDate.of(2024, 1, 1))));
+
+        index.put(expense("1", "Tea", "Food", LocalDate.of(2024, 1, 1)));
+        assertEquals(0, index.search("coffee", 10).total());
+        assertEquals(List.of("1"), ids(index.search("tea", 10)));
+
+        index.remove("1");
+        index.remove("missing");
+        assertEquals(0, index.size());
+        assertEquals(0, index.search("tea", 10).total());
+    }
+
+    @Test
+    void testCompactionKeepsLiveDocuments() {
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            expenses.add(expense(Integer.toString(i), "Lunch " + i, "Food", LocalDate.of(2024, 1, 1).plusDays(i % 300)));
+        }
+        ExpenseSearchIndex index = new ExpenseSearchIndex(expenses);
+
+        // Enough removals that dead documents pass the compaction threshold and outnumber live ones
+        for (int i = 0; i < 3000; i++) {
+            if (i % 3 != 0) {
+                index.remove(Integer.toString(i));
+            }
+        }
+        // Replacing after compaction renumbers documents again
+        index.put(expense("0", "Dinner", "Food", LocalDate.of(2024, 1, 1)));
+
+        assertEquals(1000, index.size());
+        assertEquals(999, index.search("lunch", 2000).total());
+        assertEquals(List.of("0"), ids(index.search("dinner", 10)));
+        assertEquals(List.of("2997"), ids(index.search("lunch 2997", 10)));
+        assertEquals(0, index.search("lunch 2998", 10).total());
+        for (Expense hit : index.search("lunch", 2000).expenses()) {
+            assertEquals(0, Integer.parseInt(hit.getId()) % 3);
+        }
+    }
+}
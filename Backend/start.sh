@@ -0,0 +1,5 @@
+#!/bin/sh
+# Starts the exploded application in the Docker image (see Dockerfile) with its class data sharing
+# archive and the AOT-generated context. The image build overrides CDS_OPTS once to record the archive.
+exec java ${CDS_OPTS:--XX:SharedArchiveFile=app.jsa} -Dspring.aot.enabled=true -Dserver.port=${PORT:-8080} $JAVA_OPTS \
+    -cp "$(cat classpath)" com.expensetracker.ExpenseTrackerApplication "$@"
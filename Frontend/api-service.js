@@ -7,7 +7,9 @@
 const API_CONFIG = {
     USE_FIREBASE: true, // Set to false to use Spring Boot backend
     BACKEND_URL: 'http://localhost:8080/api/expenses', // Change for production
-    PRODUCTION_URL: 'https://expense-tracker-production-0cd7.up.railway.app/api/expenses'
+    PRODUCTION_URL: 'https://expense-tracker-production-0cd7.up.railway.app/api/expenses',
+    PAGE_SIZE: 200, // Expenses per request when paging through the Spring Boot API
+    LIST_FIELDS: 'id,title,amount,category,date' // Expense fields the list renders; the rest is not sent
 };
 
 // Get the correct API URL based on environment
@@ -103,6 +105,11 @@ const ExpenseValidator = {
 // ===========================
 // FIREBASE API (Current)
 // ===========================
+
+// How long a deleted expense's tombstone is kept for the backend's delta sync;
+// matches expense.changes.tombstone-retention-days
+const TOMBSTONE_RETENTION_DAYS = 30;
+
 const FirebaseAPI = {
     async getAllExpenses(userId) {
         if (!window.db || !userId) {
@@ -172,16 +179,21 @@ const FirebaseAPI = {
         }
 
         try {
-            const { collection, addDoc, Timestamp } = window.firestoreModules;
+            const { collection, addDoc, Timestamp, serverTimestamp } = window.firestoreModules;
             const expensesRef = collection(window.db, 'expenses');
             
             const docRef = await addDoc(expensesRef, {
                 title: expenseData.title.trim(),
                 amount: parseFloat(expenseData.amount),
+                // Exact amount in paise, as the Spring Boot backend stores it
+                amountMinor: Math.round(parseFloat(expenseData.amount) * 100),
+                amountScale: 2,
                 category: expenseData.category.trim(),
                 date: Timestamp.fromDate(new Date(expenseData.date)),
                 userId: userId,
-                createdAt: Timestamp.now()
+                createdAt: Timestamp.now(),
+                // Commit time, which the backend's delta sync (GET /api/expenses/changes) pages by
+                updatedAt: serverTimestamp()
             });
             
             return { id: docRef.id, ...expenseData };
@@ -201,15 +213,18 @@ const FirebaseAPI = {
         }
 
         try {
-            const { doc, updateDoc, Timestamp } = window.firestoreModules;
+            const { doc, updateDoc, Timestamp, serverTimestamp } = window.firestoreModules;
             const expenseRef = doc(window.db, 'expenses', expenseId);
             
             await updateDoc(expenseRef, {
                 title: expenseData.title.trim(),
                 amount: parseFloat(expenseData.amount),
+                // Exact amount in paise, as the Spring Boot backend stores it
+                amountMinor: Math.round(parseFloat(expenseData.amount) * 100),
+                amountScale: 2,
                 category: expenseData.category.trim(),
                 date: Timestamp.fromDate(new Date(expenseData.date)),
-                updatedAt: Timestamp.now()
+                updatedAt: serverTimestamp()
             });
             
             return { id: expenseId, ...expenseData };
@@ -223,9 +238,18 @@ const FirebaseAPI = {
         if (!window.db || !userId) throw new Error('Not authenticated');
 
         try {
-            const { doc, deleteDoc } = window.firestoreModules;
+            const { doc, writeBatch, serverTimestamp, Timestamp } = window.firestoreModules;
             const expenseRef = doc(window.db, 'expenses', expenseId);
-            await deleteDoc(expenseRef);
+            // Leave a tombstone in the same commit, as the backend does, so delta sync sees the delete
+            const expireAt = new Date(Date.now() + TOMBSTONE_RETENTION_DAYS * 24 * 60 * 60 * 1000);
+            const batch = writeBatch(window.db);
+            batch.delete(expenseRef);
+            batch.set(doc(window.db, 'expense_tombstones', expenseId), {
+                userId: userId,
+                deletedAt: serverTimestamp(),
+                expireAt: Timestamp.fromDate(expireAt)
+            });
+            await batch.commit();
             return { success: true, message: 'Expense deleted successfully' };
         } catch (error) {
             console.error('Error deleting expense:', error);
@@ -237,15 +261,35 @@ const FirebaseAPI = {
 // ===========================
 // SPRING BOOT API (Backend)
 // ===========================
+
+// The backend verifies the signed-in user's Firebase ID token; X-User-Id is only
+// trusted by servers running with expense.auth.required=false
+async function apiHeaders(userId) {
+    const headers = {
+        'Content-Type': 'application/json',
+        'X-User-Id': userId || 'anonymous'
+    };
+    const user = window.auth && window.auth.currentUser;
+    if (user) {
+        headers['Authorization'] = `Bearer ${await user.getIdToken()}`;
+    }
+    return headers;
+}
+
 const SpringBootAPI = {
-    async getAllExpenses(userId) {
+    // One page of expenses as { expenses, nextPageToken }; pass nextPageToken back for the page after it.
+    // filters: optional { category, from, to, minAmount, maxAmount, sort }, applied by the server
+    async getExpensesPage(userId, filters = {}, pageToken = null) {
         try {
-            const response = await fetch(getApiUrl(), {
+            const params = new URLSearchParams({ limit: API_CONFIG.PAGE_SIZE, fields: API_CONFIG.LIST_FIELDS });
+            Object.entries(filters)
+                .filter(([, value]) => value !== undefined && value !== null && value !== '')
+                .forEach(([key, value]) => params.set(key, value));
+            if (pageToken) params.set('pageToken', pageToken);
+
+            const response = await fetch(`${getApiUrl()}?${params}`, {
                 method: 'GET',
-                headers: {
-                    'Content-Type': 'application/json',
-                    'X-User-Id': userId || 'anonymous'
-                }
+                headers: await apiHeaders(userId)
             });
 
             if (!response.ok) {
@@ -253,13 +297,56 @@ const SpringBootAPI = {
             }
 
             const data = await response.json();
-            return data.expenses || [];
+            return { expenses: data.expenses || [], nextPageToken: data.nextPageToken || null };
         } catch (error) {
             console.error('Error fetching expenses:', error);
             throw error;
         }
     },
 
+    // Totals over all of the user's expenses: { totalAmount, count, byCategory, byMonth }
+    async getSummary(userId) {
+        try {
+            const response = await fetch(`${getApiUrl()}/summary`, {
+                method: 'GET',
+                headers: await apiHeaders(userId)
+            });
+
+            if (!response.ok) {
+                throw new Error(`HTTP error! status: ${response.status}`);
+            }
+
+            return await response.json();
+        } catch (error) {
+            console.error('Error fetching summary:', error);
+            throw error;
+        }
+    },
+
+    // Totals over the user's expenses dated from/to (ISO dates, both optional):
+    // { totalAmount, count, monthly, byCategory, byDayOfWeek, top }; top is the number of largest expenses
+    async getAnalytics(userId, { from, to, top = 0 } = {}) {
+        try {
+            const params = new URLSearchParams({ top });
+            if (from) params.set('from', from);
+            if (to) params.set('to', to);
+
+            const response = await fetch(`${getApiUrl()}/analytics?${params}`, {
+                method: 'GET',
+                headers: await apiHeaders(userId)
+            });
+
+            if (!response.ok) {
+                throw new Error(`HTTP error! status: ${response.status}`);
+            }
+
+            return await response.json();
+        } catch (error) {
+            console.error('Error fetching analytics:', error);
+            throw error;
+        }
+    },
+
     async createExpense(expenseData, userId) {
         // Validate
         const validation = ExpenseValidator.validateExpense(expenseData);
@@ -270,10 +357,7 @@ const SpringBootAPI = {
         try {
             const response = await fetch(getApiUrl(), {
                 method: 'POST',
-                headers: {
-                    'Content-Type': 'application/json',
-                    'X-User-Id': userId || 'anonymous'
-                },
+                headers: await apiHeaders(userId),
                 body: JSON.stringify({
                     title: expenseData.title.trim(),
                     amount: parseFloat(expenseData.amount),
@@ -304,10 +388,7 @@ const SpringBootAPI = {
         try {
             const response = await fetch(`${getApiUrl()}/${expenseId}`, {
                 method: 'PUT',
-                headers: {
-                    'Content-Type': 'application/json',
-                    'X-User-Id': userId || 'anonymous'
-                },
+                headers: await apiHeaders(userId),
                 body: JSON.stringify({
                     title: expenseData.title.trim(),
                     amount: parseFloat(expenseData.amount),
@@ -332,10 +413,7 @@ const SpringBootAPI = {
         try {
             const response = await fetch(`${getApiUrl()}/${expenseId}`, {
                 method: 'DELETE',
-                headers: {
-                    'Content-Type': 'application/json',
-                    'X-User-Id': userId || 'anonymous'
-                }
+                headers: await apiHeaders(userId)
             });
 
             if (!response.ok) {
@@ -347,6 +425,38 @@ const SpringBootAPI = {
             console.error('Error deleting expense:', error);
             throw error;
         }
+    },
+
+    // Live changes from other devices via Server-Sent Events; returns a function that stops them.
+    // EventSource cannot send headers, so the ID token goes in the URL. A rejected reconnect
+    // (expired token) closes the source; reopen it with a fresh token.
+    subscribe(userId, onChange) {
+        let source = null;
+        let stopped = false;
+
+        const open = async () => {
+            const params = new URLSearchParams({ userId: userId || 'anonymous' });
+            const user = window.auth && window.auth.currentUser;
+            if (user) params.set('access_token', await user.getIdToken());
+            if (stopped) return;
+
+            source = new EventSource(`${getApiUrl()}/stream?${params}`);
+            // An array of { type: 'added' | 'modified' | 'removed', id, expense } to apply to the loaded list
+            source.addEventListener('changes', (event) => onChange(JSON.parse(event.data)));
+            // The server dropped changes this client was too slow to take; refetch everything
+            source.addEventListener('resync', () => onChange(null));
+            source.addEventListener('error', () => {
+                if (source.readyState === EventSource.CLOSED && !stopped) {
+                    setTimeout(open, 5000);
+                }
+            });
+        };
+
+        open();
+        return () => {
+            stopped = true;
+            if (source) source.close();
+        };
     }
 };
 
@@ -358,11 +468,31 @@ const ExpenseAPI = {
     // Validation utilities (exposed for form validation)
     validator: ExpenseValidator,
 
-    // Get all expenses
-    async getAll(userId) {
-        return API_CONFIG.USE_FIREBASE 
-            ? await FirebaseAPI.getAllExpenses(userId)
-            : await SpringBootAPI.getAllExpenses(userId);
+    // Get the first page of expenses, or the page after pageToken, as { expenses, nextPageToken }.
+    // Firebase mode returns everything as one page; filters only apply with the Spring Boot backend.
+    async getPage(userId, pageToken = null, filters = {}) {
+        return API_CONFIG.USE_FIREBASE
+            ? { expenses: await FirebaseAPI.getAllExpenses(userId), nextPageToken: null }
+            : await SpringBootAPI.getExpensesPage(userId, filters, pageToken);
+    },
+
+    // Get totals over all expenses, or null when the whole list is loaded anyway (Firebase mode)
+    async getSummary(userId) {
+        return API_CONFIG.USE_FIREBASE
+            ? null
+            : await SpringBootAPI.getSummary(userId);
+    },
+
+    // Get totals over the expenses dated from/to, or null when the whole list is loaded anyway (Firebase mode)
+    async getAnalytics(userId, range = {}) {
+        return API_CONFIG.USE_FIREBASE
+            ? null
+            : await SpringBootAPI.getAnalytics(userId, range);
+    },
+
+    // Whether getPage filters and sorts on the server, so the list has to be fetched again when they change
+    filtersOnServer() {
+        return !API_CONFIG.USE_FIREBASE;
     },
 
     // Create new expense
@@ -386,6 +516,15 @@ const ExpenseAPI = {
             : await SpringBootAPI.deleteExpense(expenseId, userId);
     },
 
+    // Call onChange with the changes when the user's expenses change elsewhere, or with null when the
+    // list has to be fetched again (Spring Boot only; Firebase mode reloads after its own writes).
+    // Returns a function that stops listening.
+    subscribe(userId, onChange) {
+        return API_CONFIG.USE_FIREBASE
+            ? () => {}
+            : SpringBootAPI.subscribe(userId, onChange);
+    },
+
     // Get current backend type
     getBackendType() {
         return API_CONFIG.USE_FIREBASE ? 'Firebase' : 'Spring Boot';
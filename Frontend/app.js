@@ -4,6 +4,9 @@
 // Firebase will handle data storage - no need for API_BASE_URL
 
 let allExpenses = [];
+let nextPageToken = null; // Set while more expenses can be loaded
+let expenseSummary = null; // Server totals over all expenses, when only some are loaded
+let recentTotals = null; // Server totals over the last RECENT_DAYS days, alongside expenseSummary
 let editingExpenseId = null;
 let charts = {
     pie: null,
@@ -12,14 +15,121 @@ let charts = {
     monthlyBar: null
 };
 
+const RECENT_DAYS = 30; // Days the daily average is taken over
+
 // Function to update expenses UI (called by firebase-auth.js)
-window.updateExpensesUI = function(expenses) {
+window.updateExpensesUI = function(expenses, pageToken = null, summary = null, recent = null) {
+    allExpenses = expenses;
+    nextPageToken = pageToken;
+    expenseSummary = summary;
+    recentTotals = recent;
+    renderExpenses();
+    updateSummaryCards();
+    renderCharts();
+};
+
+// Function to show the list again for changed filters (called by firebase-auth.js); totals do not depend on them
+window.replaceExpensesUI = function(expenses, pageToken = null) {
     allExpenses = expenses;
+    nextPageToken = pageToken;
+    renderExpenses();
+};
+
+// The list filters and sort order, for the server to apply (Spring Boot backend)
+window.getExpenseFilters = function() {
+    return {
+        category: document.getElementById('categoryFilter').value,
+        sort: document.getElementById('sortBy').value
+    };
+};
+
+// The date range the daily average is taken over, for the server to total (Spring Boot backend)
+window.getRecentRange = function() {
+    const from = recentStart();
+    const month = String(from.getMonth() + 1).padStart(2, '0');
+    const day = String(from.getDate()).padStart(2, '0');
+    return { from: `${from.getFullYear()}-${month}-${day}` };
+};
+
+// Function to show new server totals (called by firebase-auth.js)
+window.updateTotalsUI = function(summary, recent = null) {
+    expenseSummary = summary;
+    recentTotals = recent;
+    updateSummaryCards();
+    renderCharts();
+};
+
+// Function to apply live changes from elsewhere to the loaded expenses (called by firebase-auth.js).
+// changes: [{ type: 'added' | 'modified' | 'removed', id, expense }]; a removal has no expense.
+window.applyExpenseChangesUI = function(changes) {
+    // The next page continues after the last expense loaded, wherever changes move it
+    const loaded = filterAndSortExpenses();
+    const lastLoaded = nextPageToken && loaded.length > 0 ? loaded[loaded.length - 1] : null;
+    changes.forEach(change => {
+        allExpenses = allExpenses.filter(exp => exp.id !== change.id);
+        if (change.type !== 'removed' && change.expense && belongsInLoadedList(change.expense, lastLoaded)) {
+            allExpenses.push(change.expense);
+        }
+    });
+    renderExpenses();
+    // Server totals are fetched again by the caller
+    if (!expenseSummary) {
+        updateSummaryCards();
+        renderCharts();
+    }
+};
+
+// Whether an expense shows in the list as loaded so far: it matches the filter and sorts no later than
+// lastLoaded, if more pages remain after it (later ones arrive with their page)
+function belongsInLoadedList(expense, lastLoaded) {
+    const categoryFilter = document.getElementById('categoryFilter').value;
+    if (categoryFilter && expense.category !== categoryFilter) {
+        return false;
+    }
+    return !lastLoaded || compareExpenses(expense, lastLoaded) <= 0;
+}
+
+// Function to add a further page of expenses (called by firebase-auth.js)
+window.appendExpensesUI = function(expenses, pageToken = null) {
+    // A live change may already have added an expense on this page
+    const loadedIds = new Set(allExpenses.map(exp => exp.id));
+    allExpenses = allExpenses.concat(expenses.filter(exp => !loadedIds.has(exp.id)));
+    nextPageToken = pageToken;
     renderExpenses();
     updateSummaryCards();
     renderCharts();
 };
 
+// The server filters and sorts when the list is paged, so it is fetched again; otherwise everything is loaded
+async function applyFilters() {
+    if (!window.ExpenseAPI || !window.ExpenseAPI.filtersOnServer()) {
+        renderExpenses();
+        return;
+    }
+    // The loaded page token belongs to the old filters
+    nextPageToken = null;
+    document.getElementById('loadMoreBtn').hidden = true;
+    try {
+        await window.reloadExpenseList();
+    } catch (error) {
+        console.error('Error filtering expenses:', error);
+        showNotification('Failed to filter expenses. Please try again.', 'error');
+    }
+}
+
+async function loadMoreExpenses() {
+    const button = document.getElementById('loadMoreBtn');
+    button.disabled = true;
+    try {
+        await window.loadMoreExpenses(nextPageToken);
+    } catch (error) {
+        console.error('Error loading more expenses:', error);
+        showNotification('Failed to load more expenses. Please try again.', 'error');
+    } finally {
+        button.disabled = false;
+    }
+}
+
 // ===========================
 // THEME MANAGEMENT
 // ===========================
@@ -228,6 +338,7 @@ function validateForm() {
 // ===========================
 function renderExpenses() {
     const tbody = document.getElementById('expensesTableBody');
+    document.getElementById('loadMoreBtn').hidden = !nextPageToken;
     
     if (allExpenses.length === 0) {
         tbody.innerHTML = '<tr><td colspan="5" class="text-center text-muted">No expenses found</td></tr>';
@@ -258,6 +369,8 @@ function renderExpenses() {
     `).join('');
 }
 
+// With paging the server has already filtered and sorted the loaded pages; doing it here too keeps
+// them in order after local changes, and is all there is when the whole list is loaded (Firebase mode)
 function filterAndSortExpenses() {
     let filtered = [...allExpenses];
     
@@ -268,28 +381,31 @@ function filterAndSortExpenses() {
     }
     
     // Apply sorting
-    const sortBy = document.getElementById('sortBy').value;
-    filtered.sort((a, b) => {
-        switch(sortBy) {
-            case 'date-desc':
-                return new Date(b.date) - new Date(a.date);
-            case 'date-asc':
-                return new Date(a.date) - new Date(b.date);
-            case 'amount-desc':
-                return b.amount - a.amount;
-            case 'amount-asc':
-                return a.amount - b.amount;
-            default:
-                return 0;
-        }
-    });
+    filtered.sort(compareExpenses);
     
     return filtered;
 }
 
+// Order of two expenses under the selected sort
+function compareExpenses(a, b) {
+    const sortBy = document.getElementById('sortBy').value;
+    switch(sortBy) {
+        case 'date-desc':
+            return new Date(b.date) - new Date(a.date);
+        case 'date-asc':
+            return new Date(a.date) - new Date(b.date);
+        case 'amount-desc':
+            return b.amount - a.amount;
+        case 'amount-asc':
+            return a.amount - b.amount;
+        default:
+            return 0;
+    }
+}
+
 function updateSummaryCards() {
-    const total = allExpenses.length;
-    const totalAmount = allExpenses.reduce((sum, exp) => sum + exp.amount, 0);
+    let total = allExpenses.length;
+    let totalAmount = allExpenses.reduce((sum, exp) => sum + exp.amount, 0);
     
     // Calculate monthly amount
     const currentMonth = new Date().getMonth();
@@ -298,13 +414,20 @@ function updateSummaryCards() {
         const expDate = new Date(exp.date);
         return expDate.getMonth() === currentMonth && expDate.getFullYear() === currentYear;
     });
-    const monthlyAmount = monthlyExpenses.reduce((sum, exp) => sum + exp.amount, 0);
+    let monthlyAmount = monthlyExpenses.reduce((sum, exp) => sum + exp.amount, 0);
     
     // Calculate average per day (last 30 days)
-    const thirtyDaysAgo = new Date();
-    thirtyDaysAgo.setDate(thirtyDaysAgo.getDate() - 30);
-    const recentExpenses = allExpenses.filter(exp => new Date(exp.date) >= thirtyDaysAgo);
-    const avgAmount = recentExpenses.length > 0 ? recentExpenses.reduce((sum, exp) => sum + exp.amount, 0) / 30 : 0;
+    const recentExpenses = allExpenses.filter(exp => new Date(exp.date) >= recentStart());
+    let avgAmount = recentExpenses.reduce((sum, exp) => sum + exp.amount, 0) / RECENT_DAYS;
+    
+    // Totals cover every expense, not only the pages loaded so far
+    if (expenseSummary) {
+        const monthKey = `${currentYear}-${String(currentMonth + 1).padStart(2, '0')}`;
+        total = expenseSummary.count || 0;
+        totalAmount = Number(expenseSummary.totalAmount || 0);
+        monthlyAmount = Number((expenseSummary.byMonth || {})[monthKey] || 0);
+        avgAmount = recentTotals ? Number(recentTotals.totalAmount || 0) / RECENT_DAYS : 0;
+    }
     
     document.getElementById('totalExpenses').textContent = total;
     document.getElementById('totalAmount').textContent = `₹${totalAmount.toFixed(2)}`;
@@ -316,7 +439,8 @@ function updateSummaryCards() {
 // CHARTS
 // ===========================
 function renderCharts() {
-    if (allExpenses.length === 0) {
+    const hasExpenses = expenseSummary ? expenseSummary.count > 0 : allExpenses.length > 0;
+    if (!hasExpenses) {
         destroyCharts();
         renderEmptyCharts();
         return;
@@ -821,7 +945,16 @@ function renderEmptyCharts() {
 // ===========================
 // DATA PROCESSING
 // ===========================
+// Charts cover every expense: from the server's totals when only some pages are loaded
 function getCategoryData() {
+    if (expenseSummary) {
+        const byCategory = expenseSummary.byCategory || {};
+        return {
+            labels: Object.keys(byCategory),
+            amounts: Object.values(byCategory).map(Number)
+        };
+    }
+    
     const categoryTotals = {};
     
     allExpenses.forEach(expense => {
@@ -848,16 +981,18 @@ function getMonthlyData() {
         const key = `${date.getFullYear()}-${String(date.getMonth() + 1).padStart(2, '0')}`;
         const label = date.toLocaleDateString('en-US', { month: 'short', year: 'numeric' });
         months.push({ key, label });
-        monthlyTotals[key] = 0;
+        monthlyTotals[key] = expenseSummary ? Number((expenseSummary.byMonth || {})[key] || 0) : 0;
     }
     
-    allExpenses.forEach(expense => {
-        const expDate = new Date(expense.date);
-        const key = `${expDate.getFullYear()}-${String(expDate.getMonth() + 1).padStart(2, '0')}`;
-        if (monthlyTotals.hasOwnProperty(key)) {
-            monthlyTotals[key] += expense.amount;
-        }
-    });
+    if (!expenseSummary) {
+        allExpenses.forEach(expense => {
+            const expDate = new Date(expense.date);
+            const key = `${expDate.getFullYear()}-${String(expDate.getMonth() + 1).padStart(2, '0')}`;
+            if (monthlyTotals.hasOwnProperty(key)) {
+                monthlyTotals[key] += expense.amount;
+            }
+        });
+    }
     
     return {
         labels: months.map(m => m.label),
@@ -868,6 +1003,13 @@ function getMonthlyData() {
 // ===========================
 // UTILITY FUNCTIONS
 // ===========================
+// Start of the days the daily average is taken over
+function recentStart() {
+    const date = new Date();
+    date.setDate(date.getDate() - RECENT_DAYS);
+    return date;
+}
+
 function formatDate(dateString) {
     const date = new Date(dateString);
     return date.toLocaleDateString('en-IN', { 
@@ -946,8 +1088,9 @@ document.addEventListener('DOMContentLoaded', () => {
     initializeForm();
     
     // Initialize filters
-    document.getElementById('categoryFilter').addEventListener('change', renderExpenses);
-    document.getElementById('sortBy').addEventListener('change', renderExpenses);
+    document.getElementById('categoryFilter').addEventListener('change', applyFilters);
+    document.getElementById('sortBy').addEventListener('change', applyFilters);
+    document.getElementById('loadMoreBtn').addEventListener('click', loadMoreExpenses);
     
     // Firebase will handle loading expenses via auth state observer
     // No need to call loadExpenses() here
@@ -11,6 +11,9 @@ import {
 import { ExpenseAPI, ExpenseValidator } from './api-service.js';
 
 let currentUser = null;
+let unsubscribeChanges = null;
+let listRequest = 0; // Moves on with every fetch of the list's first page, so older responses are dropped
+let totalsTimer = null;
 
 // DOM Elements
 const authModal = document.getElementById('authModal');
@@ -39,11 +42,24 @@ function initializeAuth() {
 // Setup Auth State Observer
 function setupAuthObserver() {
     onAuthStateChanged(window.auth, (user) => {
+        if (unsubscribeChanges) {
+            unsubscribeChanges();
+            unsubscribeChanges = null;
+        }
         if (user) {
             currentUser = user;
             showMainApp();
             userEmailSpan.textContent = user.email;
             loadUserExpenses();
+            // Apply changes from other devices to the loaded list; refetch it only when told to resync
+            unsubscribeChanges = ExpenseAPI.subscribe(user.uid, (changes) => {
+                if (!changes) {
+                    loadUserExpenses();
+                    return;
+                }
+                window.applyExpenseChangesUI(changes);
+                refreshTotalsSoon();
+            });
         } else {
             currentUser = null;
             showAuthModal();
@@ -191,19 +207,67 @@ async function loadUserExpenses() {
         
         console.log('📊 Loading expenses for user:', currentUser.uid);
         
-        // Use imported ExpenseAPI
-        const expenses = await ExpenseAPI.getAll(currentUser.uid);
+        // Only the first page is loaded here; the rest on demand through loadMoreExpenses.
+        // Summary cards and charts come from the server's totals, which cover every page.
+        const request = ++listRequest;
+        const [page, summary, recent] = await Promise.all([
+            ExpenseAPI.getPage(currentUser.uid, null, window.getExpenseFilters()),
+            ExpenseAPI.getSummary(currentUser.uid),
+            ExpenseAPI.getAnalytics(currentUser.uid, window.getRecentRange())
+        ]);
+        if (request !== listRequest) return;
         
-        console.log('✅ Loaded expenses:', expenses.length);
+        console.log('✅ Loaded expenses:', page.expenses.length);
         
         // Update UI with expenses
-        window.updateExpensesUI(expenses);
+        window.updateExpensesUI(page.expenses, page.nextPageToken, summary, recent);
     } catch (error) {
         console.error('❌ Error loading expenses:', error);
         alert('Failed to load expenses. Please refresh the page.');
     }
 }
 
+// Fetch the server totals again once a burst of live changes is over; a removal carries no amount,
+// so they cannot be adjusted here
+function refreshTotalsSoon() {
+    clearTimeout(totalsTimer);
+    totalsTimer = setTimeout(async () => {
+        if (!currentUser) return;
+        try {
+            const [summary, recent] = await Promise.all([
+                ExpenseAPI.getSummary(currentUser.uid),
+                ExpenseAPI.getAnalytics(currentUser.uid, window.getRecentRange())
+            ]);
+            window.updateTotalsUI(summary, recent);
+        } catch (error) {
+            console.error('Error refreshing totals:', error);
+        }
+    }, 1000);
+}
+
+// Load the first page again for changed filters (Using API Service)
+window.reloadExpenseList = async () => {
+    if (!currentUser) return;
+    
+    const request = ++listRequest;
+    const page = await ExpenseAPI.getPage(currentUser.uid, null, window.getExpenseFilters());
+    if (request === listRequest) {
+        window.replaceExpensesUI(page.expenses, page.nextPageToken);
+    }
+};
+
+// Load the page of expenses after the ones shown (Using API Service)
+window.loadMoreExpenses = async (pageToken) => {
+    if (!currentUser || !pageToken) return;
+    
+    // The token only continues the list it came from, with the same filters
+    const request = listRequest;
+    const page = await ExpenseAPI.getPage(currentUser.uid, pageToken, window.getExpenseFilters());
+    if (request === listRequest) {
+        window.appendExpensesUI(page.expenses, page.nextPageToken);
+    }
+};
+
 // Add Expense (Using API Service)
 window.addExpenseToFirestore = async (expense) => {
     if (!currentUser) {